@@ -0,0 +1,90 @@
+package dev.cortex.cortexbot.commands;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.services.AuditJournal;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Searches the local audit journal, much faster than scrolling the logging channel.
+ */
+@Component
+public class AuditCommand extends SlashCommand {
+
+    private static final int MAX_ENTRIES = 25;
+
+    private final AuditJournal auditJournal;
+
+    public AuditCommand(AuditJournal auditJournal){
+        this.auditJournal = auditJournal;
+        this.name = "audit";
+        this.help = "Search the audit journal";
+        this.ownerCommand = true;
+        this.options = List.of(
+                new OptionData(OptionType.USER, "user", "Only entries involving this person"),
+                new OptionData(OptionType.STRING, "from", "First day to search, as yyyy-mm-dd. Defaults to a week ago"),
+                new OptionData(OptionType.STRING, "to", "Last day to search, as yyyy-mm-dd. Defaults to today"));
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+
+        User user = event.getOption("user") == null ? null : event.getOption("user").getAsUser();
+
+        Instant from;
+        Instant to;
+        try {
+            to = event.getOption("to") == null ? Instant.now()
+                    : LocalDate.parse(event.getOption("to").getAsString()).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().minusMillis(1);
+            from = event.getOption("from") == null ? to.minus(7, ChronoUnit.DAYS)
+                    : LocalDate.parse(event.getOption("from").getAsString()).atStartOfDay(ZoneOffset.UTC).toInstant();
+        } catch (DateTimeParseException e) {
+            event.reply("Dates need to look like 2023-05-20.").setEphemeral(true).queue();
+            return;
+        }
+
+        if (from.isAfter(to)) {
+            event.reply("The from date needs to be before the to date.").setEphemeral(true).queue();
+            return;
+        }
+
+        event.deferReply(true).queue();
+
+        List<AuditJournal.Entry> entries = auditJournal.query(user == null ? null : user.getId(), from, to, MAX_ENTRIES);
+
+        StringBuilder message = new StringBuilder();
+        for (AuditJournal.Entry entry : entries) {
+            StringBuilder line = new StringBuilder("<t:" + entry.timestamp() / 1000 + ":f> `" + entry.type() + "`");
+            if (entry.amount() != null) line.append(" ").append(entry.amount() >= 0 ? "+" : "").append(entry.amount());
+            if (entry.target() != null) line.append(" <@").append(entry.target()).append(">");
+            if (entry.actor() != null) line.append(" by <@").append(entry.actor()).append(">");
+            if (entry.reason() != null) line.append(" - \"").append(entry.reason()).append("\"");
+            if (entry.text() != null) line.append(" ").append(entry.text());
+            line.append("\n");
+
+            if (message.length() + line.length() > Message.MAX_CONTENT_LENGTH) {
+                break;
+            }
+            message.append(line);
+        }
+
+        if (entries.isEmpty()) {
+            message.append("Nothing in the audit journal matches.");
+        }
+
+        event.getHook().sendMessage(message.toString()).queue();
+
+    }
+
+}
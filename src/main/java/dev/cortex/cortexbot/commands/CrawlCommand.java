@@ -0,0 +1,107 @@
+package dev.cortex.cortexbot.commands;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.services.HistoryCrawler;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.channel.ChannelType;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Owner only, rebuilds message counts from channel history, see HistoryCrawler.
+ */
+@Component
+public class CrawlCommand extends SlashCommand {
+
+    private final HistoryCrawler historyCrawler;
+
+    public CrawlCommand(HistoryCrawler historyCrawler) {
+        this.historyCrawler = historyCrawler;
+        this.name = "crawl";
+        this.help = "Rebuild message counts from channel history";
+        this.ownerCommand = true;
+        this.children = new SlashCommand[]{new Start(), new Status(), new Cancel()};
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+        //subcommands only
+    }
+
+    private class Start extends SlashCommand {
+
+        public Start() {
+            this.name = "start";
+            this.help = "Crawl one channel, or every channel the bot can read";
+            this.ownerCommand = true;
+            this.options = List.of(new OptionData(OptionType.CHANNEL, "channel", "Only crawl this channel").setChannelTypes(ChannelType.TEXT));
+        }
+
+        @Override
+        protected void execute(SlashCommandEvent event) {
+            List<TextChannel> channels = event.getOption("channel") == null
+                    ? event.getGuild().getTextChannels().stream()
+                        .filter(channel -> event.getGuild().getSelfMember().hasPermission(channel, Permission.VIEW_CHANNEL, Permission.MESSAGE_HISTORY))
+                        .toList()
+                    : List.of(event.getOption("channel").getAsChannel().asTextChannel());
+
+            if (historyCrawler.start(channels)) {
+                event.reply("Crawling " + channels.size() + " channels. Use `/crawl status` to follow along.").setEphemeral(true).queue();
+            } else {
+                event.reply("A crawl is already running.").setEphemeral(true).queue();
+            }
+        }
+
+    }
+
+    private class Status extends SlashCommand {
+
+        public Status() {
+            this.name = "status";
+            this.help = "How far the crawl has got";
+            this.ownerCommand = true;
+        }
+
+        @Override
+        protected void execute(SlashCommandEvent event) {
+            HistoryCrawler.Progress progress = historyCrawler.getProgress();
+            if (progress == null) {
+                event.reply("No crawl has run since the bot started.").setEphemeral(true).queue();
+                return;
+            }
+
+            Duration remaining = progress.remaining();
+            event.reply((progress.running() ? "Crawling" : "Last crawl") + ": "
+                    + progress.channelsDone() + "/" + progress.channels() + " channels done, "
+                    + progress.messages() + " messages in " + progress.pages() + " pages, "
+                    + String.format("%.1f", progress.pagesPerSecond()) + " pages/s"
+                    + (progress.running() && remaining != null
+                        ? ", about " + remaining.toHours() + "h " + remaining.toMinutesPart() + "m left" : "")
+                    + ".").setEphemeral(true).queue();
+        }
+
+    }
+
+    private class Cancel extends SlashCommand {
+
+        public Cancel() {
+            this.name = "cancel";
+            this.help = "Stop the crawl, it can be picked up again with start";
+            this.ownerCommand = true;
+        }
+
+        @Override
+        protected void execute(SlashCommandEvent event) {
+            historyCrawler.cancel();
+            event.reply("Stopping the crawl after the current pages.").setEphemeral(true).queue();
+        }
+
+    }
+
+}
@@ -2,55 +2,40 @@ package dev.cortex.cortexbot.commands;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
-import dev.cortex.cortexbot.model.CortexMember;
-import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import dev.cortex.cortexbot.services.DailyActivityService;
+import dev.cortex.cortexbot.services.LeaderboardService;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Component
 public class LeaderboardCommand extends SlashCommand {
 
-    private final CortexMemberRepository cortexMemberRepository;
+    private final LeaderboardService leaderboardService;
 
-    public LeaderboardCommand(CortexMemberRepository cortexMemberRepository){
+    public LeaderboardCommand(LeaderboardService leaderboardService){
         this.name = "leaderboard";
-        this.help = "Get the top ten leaderboard rankings";
+        this.help = "Browse the leaderboard rankings";
         this.guildOnly = false;
-        this.cortexMemberRepository = cortexMemberRepository;
+        this.options = List.of(new OptionData(OptionType.STRING, "period", "Rank by points earned in a recent period instead of all time")
+                .addChoice("This week", DailyActivityService.Window.WEEK.name())
+                .addChoice("This month", DailyActivityService.Window.MONTH.name()));
+        this.leaderboardService = leaderboardService;
     }
 
     @Override
     protected void execute(SlashCommandEvent event) {
 
-        ArrayList<CortexMember> top = (ArrayList<CortexMember>) cortexMemberRepository.findAll()
-                .stream()
-                .sorted(Comparator.comparing(CortexMember::getPoints).reversed())
-                .limit(15)
-                .collect(Collectors.toList());
-
-        MessageCreateBuilder message = new MessageCreateBuilder();
-
-        message.addContent("---------------------------------------------------------------------------------------------").addContent("\n");
-        message.addContent("\uD83D\uDE80 **Top 15 Leaderboard Rankings** \uD83D\uDE80").addContent("\n\n");
-
-        for (int i = 0; i < top.size(); i++){
-            message.addContent("(" + (i + 1) + ") - ").addContent("<@" + top.get(i).getUserID() + "> *-* " + top.get(i).getPoints() + " pts");
-            if (i == 0) message.addContent(":first_place:");
-            if (i == 1) message.addContent(":second_place:");
-            if (i == 2) message.addContent(":third_place:");
-            message.addContent("\n");
+        if (event.getOption("period") != null) {
+            DailyActivityService.Window window = DailyActivityService.Window.valueOf(event.getOption("period").getAsString());
+            event.reply(leaderboardService.getWindowPage(window)).setEphemeral(true).queue();
+            return;
         }
 
-        //Might have a web interface in the future, no touch
-//        message.addContent("\nYou can view the full leaderboard here: COMING SOON").addContent("\n");
-        message.addContent("\nYou can get points by being active in the server and helping others.").addContent("\n");
-        message.addContent("---------------------------------------------------------------------------------------------");
-
-        event.reply(message.build()).setEphemeral(true).queue();
+        //further pages are served by the Next and Previous buttons, see LeaderboardService
+        event.reply(leaderboardService.getFirstPage()).setEphemeral(true).queue();
 
     }
 
@@ -0,0 +1,49 @@
+package dev.cortex.cortexbot.commands;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.services.NotificationService;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class NotificationsCommand extends SlashCommand {
+
+    private final NotificationService notificationService;
+
+    public NotificationsCommand(NotificationService notificationService){
+        this.notificationService = notificationService;
+        this.name = "notifications";
+        this.help = "Choose how the bot sends you DMs";
+        this.options = List.of(new OptionData(OptionType.BOOLEAN, "digest", "Get one digest an hour instead of a DM every time"));
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+
+        String userID = event.getUser().getId();
+
+        //no option just shows what they have now
+        if (event.getOption("digest") == null) {
+            event.reply(notificationService.isDigest(userID)
+                    ? "You get your DMs as one digest an hour."
+                    : "You get a DM every time something happens.").setEphemeral(true).queue();
+            return;
+        }
+
+        boolean digest = event.getOption("digest").getAsBoolean();
+        if (!notificationService.setDigest(userID, digest)) {
+            event.reply("You are not in our database yet, send a message in the server first.").setEphemeral(true).queue();
+            return;
+        }
+
+        event.reply(digest
+                ? "You will now get your DMs as one digest an hour."
+                : "You will now get a DM every time something happens.").setEphemeral(true).queue();
+
+    }
+
+}
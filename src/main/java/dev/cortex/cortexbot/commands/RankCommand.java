@@ -0,0 +1,54 @@
+package dev.cortex.cortexbot.commands;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.services.RankingService;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+@Component
+public class RankCommand extends SlashCommand {
+
+    private final RankingService rankingService;
+
+    public RankCommand(RankingService rankingService){
+        this.name = "rank";
+        this.help = "See where you or someone else is on the leaderboard";
+        this.guildOnly = false;
+        this.options = List.of(new OptionData(OptionType.USER, "user", "The person involved"));
+        this.rankingService = rankingService;
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+
+        User user = event.getOption("user") == null ? event.getUser() : event.getOption("user").getAsUser();
+
+        int rank = rankingService.getRank(user.getId());
+
+        if (rank == -1){
+            event.reply(user.getName() + " is not on the leaderboard yet.").setEphemeral(true).queue();
+            return;
+        }
+
+        MessageCreateBuilder message = new MessageCreateBuilder();
+
+        message.addContent("\uD83D\uDE80 **" + user.getName() + " is ranked #" + rank + " of " + rankingService.size() + "** \uD83D\uDE80").addContent("\n\n");
+
+        //show the people just above and below them
+        for (RankingService.Entry entry : rankingService.getAround(user.getId(), 2)){
+            String line = "(" + entry.rank() + ") - <@" + entry.userID() + "> *-* " + entry.points() + " pts";
+            message.addContent(Objects.equals(entry.userID(), user.getId()) ? "**" + line + "**" : line).addContent("\n");
+        }
+
+        event.reply(message.build()).setEphemeral(true).queue();
+
+    }
+
+}
@@ -2,11 +2,10 @@ package dev.cortex.cortexbot.commands.challenges;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.ChallengeRepository;
 import dev.cortex.cortexbot.repositories.SubmissionRepository;
 import dev.cortex.cortexbot.services.ChallengeService;
+import dev.cortex.cortexbot.services.ChallengeState;
 import dev.cortex.cortexbot.model.challenges.Challenge;
-import dev.cortex.cortexbot.model.challenges.ChallengeStatus;
 import dev.cortex.cortexbot.model.challenges.Submission;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.interactions.components.ActionRow;
@@ -22,13 +21,13 @@ import java.util.List;
 @Component
 public class ChallengeCommand extends SlashCommand {
 
-    private final ChallengeRepository challengeRepository;
+    private final ChallengeState challengeState;
     private final ChallengeService challengeService;
     private final SubmissionRepository submissionRepository;
 
     @Autowired
-    public ChallengeCommand(ChallengeRepository challengeRepository, ChallengeService challengeService, SubmissionRepository submissionRepository) {
-        this.challengeRepository = challengeRepository;
+    public ChallengeCommand(ChallengeState challengeState, ChallengeService challengeService, SubmissionRepository submissionRepository) {
+        this.challengeState = challengeState;
         this.challengeService = challengeService;
         this.submissionRepository = submissionRepository;
         this.name = "challenge";
@@ -105,24 +104,26 @@ public class ChallengeCommand extends SlashCommand {
         @Override
         protected void execute(SlashCommandEvent event) {
 
-            Challenge challenge = challengeService.getCurrentChallenge();
+            Challenge current = challengeService.getCurrentChallenge();
 
-            //If there is already an ongoing challenge, don't allow a new one to be created
-            if (challenge == null) {
+            //If there isn't an ongoing challenge, there is nothing to end
+            if (current == null) {
                 event.reply("There is not an ongoing challenge.").queue();
                 return;
             }
 
-            challenge.setEndDate(System.currentTimeMillis());
-            challenge.setStatus(ChallengeStatus.NEEDS_GRADING);
+            //only one admin gets to end it, anyone else clicking at the same time gets null
+            Challenge challenge = challengeState.end(current);
+            if (challenge == null) {
+                event.reply("The challenge has already been ended.").setEphemeral(true).queue();
+                return;
+            }
 
             //get all submission channels for the challenge
             List<Submission> submissions = submissionRepository.findAllByChallengeIdEquals(challenge.getId());
 
             challengeService.lockSubmissionChannels(event.getGuild(), submissions);
 
-            challengeRepository.save(challenge);
-
             //Announce the end of the challenge
             MessageCreateBuilder messageBuilder = new MessageCreateBuilder();
             messageBuilder.setContent(event.getGuild().getRoleById("770425465063604244").getAsMention() + "\n\n" +
@@ -145,7 +146,18 @@ public class ChallengeCommand extends SlashCommand {
         @Override
         protected void execute(SlashCommandEvent event) {
 
-            Challenge challenge = challengeService.getCurrentUngradedChallenge();
+            Challenge current = challengeService.getCurrentUngradedChallenge();
+
+            if (current == null) {
+                event.reply("There is not a challenge waiting to be graded.").setEphemeral(true).queue();
+                return;
+            }
+
+            Challenge challenge = challengeState.finish(current);
+            if (challenge == null) {
+                event.reply("The challenge has already been finished.").setEphemeral(true).queue();
+                return;
+            }
 
             challengeService.finishChallenge(challenge, event.getGuild());
 
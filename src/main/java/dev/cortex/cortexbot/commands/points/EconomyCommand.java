@@ -0,0 +1,135 @@
+package dev.cortex.cortexbot.commands.points;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.config.DiscordConfiguration;
+import dev.cortex.cortexbot.services.EconomyService;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Owner only economy maintenance. Every operation archives the member collection first, see EconomyService.
+ */
+@Component
+public class EconomyCommand extends SlashCommand {
+
+    private final EconomyService economyService;
+    private final DiscordConfiguration discordConfiguration;
+
+    public EconomyCommand(EconomyService economyService, DiscordConfiguration discordConfiguration) {
+        this.economyService = economyService;
+        this.discordConfiguration = discordConfiguration;
+        this.name = "economy";
+        this.help = "Economy wide points maintenance";
+        this.ownerCommand = true;
+        this.children = new SlashCommand[]{new Reset(), new Decay(), new Clamp()};
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+        //subcommands only
+    }
+
+    public boolean isEconomyButton(String componentId) {
+        return componentId.startsWith("economy-reset");
+    }
+
+    public void handleClick(ButtonInteractionEvent event) {
+
+        if (!event.getUser().getId().equals(discordConfiguration.getOwnerId())) {
+            event.reply("Nice try.").setEphemeral(true).queue();
+            return;
+        }
+
+        if (event.getButton().getId().equals("economy-reset-confirm")) {
+            event.editMessage("Resetting the economy...").setComponents().queue();
+            run(event.getHook(), economyService::reset);
+        } else {
+            event.editMessage("The economy was not reset.").setComponents().queue();
+        }
+    }
+
+    private void run(InteractionHook hook, Supplier<EconomyService.Report> operation) {
+        try {
+            EconomyService.Report report = operation.get();
+            hook.editOriginal("Economy " + report.operation() + " done in " + report.millis() + "ms. "
+                    + report.modified() + " of " + report.matched() + " matched members changed, "
+                    + report.archived() + " members archived to `" + report.archive() + "`.").queue();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            hook.editOriginal("Economy operation failed: " + e.getMessage()).queue();
+        }
+    }
+
+    private class Reset extends SlashCommand {
+
+        public Reset() {
+            this.name = "reset";
+            this.help = "Set everyone's points to zero";
+            this.ownerCommand = true;
+        }
+
+        @Override
+        protected void execute(SlashCommandEvent event) {
+            event.reply("Do you really want to reset the economy?")
+                    .addActionRow(Button.danger("economy-reset-confirm", "Reset"), Button.primary("economy-reset-cancel", "Cancel"))
+                    .setEphemeral(true)
+                    .queue();
+        }
+
+    }
+
+    private class Decay extends SlashCommand {
+
+        public Decay() {
+            this.name = "decay";
+            this.help = "Take a percentage off everyone's points";
+            this.ownerCommand = true;
+            this.options = List.of(new OptionData(OptionType.INTEGER, "percent", "Percentage to take off", true).setRequiredRange(1, 100));
+        }
+
+        @Override
+        protected void execute(SlashCommandEvent event) {
+            int percent = (int) event.getOption("percent").getAsLong();
+
+            event.deferReply(true).queue();
+            run(event.getHook(), () -> economyService.decay(percent));
+        }
+
+    }
+
+    private class Clamp extends SlashCommand {
+
+        public Clamp() {
+            this.name = "clamp";
+            this.help = "Bring everyone's points within a floor and a cap";
+            this.ownerCommand = true;
+            this.options = List.of(
+                    new OptionData(OptionType.INTEGER, "floor", "Lowest points anyone should have", true).setMinValue(0),
+                    new OptionData(OptionType.INTEGER, "cap", "Highest points anyone should have", true).setMinValue(0));
+        }
+
+        @Override
+        protected void execute(SlashCommandEvent event) {
+            long floor = event.getOption("floor").getAsLong();
+            long cap = event.getOption("cap").getAsLong();
+
+            if (cap < floor) {
+                event.reply("The cap can not be lower than the floor.").setEphemeral(true).queue();
+                return;
+            }
+
+            event.deferReply(true).queue();
+            run(event.getHook(), () -> economyService.clamp(floor, cap));
+        }
+
+    }
+
+}
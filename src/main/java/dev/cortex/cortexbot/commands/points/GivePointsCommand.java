@@ -2,8 +2,10 @@ package dev.cortex.cortexbot.commands.points;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.model.CortexMember;
 import net.dv8tion.jda.api.entities.User;
@@ -19,9 +21,10 @@ import java.util.List;
 @Component
 public class GivePointsCommand extends SlashCommand {
 
-    private CortexMemberRepository cortexMemberRepository;
+    private PointsService pointsService;
     private DiscordConfiguration discordConfiguration;
     private LoggingService loggingService;
+    private NotificationService notificationService;
 
     public GivePointsCommand(){
         this.name = "give-points";
@@ -61,47 +64,37 @@ public class GivePointsCommand extends SlashCommand {
                         return;
                     }
 
-                    CortexMember cortexMember = cortexMemberRepository.findByUserIDIs(user.getId());
-
-                    if (cortexMember != null){
-
-                            int points = (int) event.getOption("amount").getAsDouble();
-                            if (points <= 0){
-                                event.getHook().sendMessage("You need to provide a positive number of points.").queue();
-                                return;
-                            }
-
-                            cortexMember.setPoints(cortexMember.getPoints() + points);
-                            cortexMemberRepository.save(cortexMember);
-
-                            event.getHook().sendMessage(points + " point(s) have been given to " + user.getName() + ".").queue();
-
-                            if (event.getOption("reason") == null){
-                                //log the points given
-                                loggingService.logPointsGiven(user.getName(), points, event.getMember().getEffectiveName(), null);
+                    int points = (int) event.getOption("amount").getAsDouble();
+                    if (points <= 0){
+                        event.getHook().sendMessage("You need to provide a positive number of points.").queue();
+                        return;
+                    }
 
-                                user.openPrivateChannel().flatMap(channel -> {
-                                    return channel.sendMessage("You have been given " + points + " points. " +
-                                            "You now have a total of " + cortexMember.getPoints() + " community points in Cortex Development.");
-                                }).queue();
-                            }else{
+                    CortexMember cortexMember = pointsService.addPoints(user.getId(), points,
+                            new PointsChangedEvent.Cause(PointsChangedEvent.Action.GIVE, event.getMember().getId(), event.getOption("reason") == null ? null : event.getOption("reason").getAsString()));
 
-                                String reason = event.getOption("reason").getAsString();
+                    if (cortexMember == null){
+                        event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                        return;
+                    }
 
-                                //log the points given
-                                loggingService.logPointsGiven(user.getName(), points, event.getMember().getEffectiveName(), reason);
+                    event.getHook().sendMessage(points + " point(s) have been given to " + user.getName() + ".").queue();
 
-                                user.openPrivateChannel().flatMap(channel -> {
-                                    return channel.sendMessage("You have been given " + points + " points for \"" + reason + "\". " +
-                                            "You now have a total of " + cortexMember.getPoints() + " community points in Cortex Development.");
-                                }).queue();
-                            }
+                    if (event.getOption("reason") == null){
+                        //log the points given
+                        loggingService.logPointsGiven(user.getName(), points, event.getMember().getEffectiveName(), null);
 
+                        notificationService.notify(user, "You have been given " + points + " points. " +
+                                    "You now have a total of " + cortexMember.getPoints() + " community points in Cortex Development.");
+                    }else{
 
+                        String reason = event.getOption("reason").getAsString();
 
+                        //log the points given
+                        loggingService.logPointsGiven(user.getName(), points, event.getMember().getEffectiveName(), reason);
 
-                    }else{
-                        event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                        notificationService.notify(user, "You have been given " + points + " points for \"" + reason + "\". " +
+                                    "You now have a total of " + cortexMember.getPoints() + " community points in Cortex Development.");
                     }
 
                 }
@@ -121,8 +114,13 @@ public class GivePointsCommand extends SlashCommand {
     }
 
     @Autowired
-    public void setMemberRepository(CortexMemberRepository cortexMemberRepository) {
-        this.cortexMemberRepository = cortexMemberRepository;
+    public void setNotificationService(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    @Autowired
+    public void setPointsService(PointsService pointsService) {
+        this.pointsService = pointsService;
     }
 
     @Autowired
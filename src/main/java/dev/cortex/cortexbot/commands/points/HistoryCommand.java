@@ -0,0 +1,66 @@
+package dev.cortex.cortexbot.commands.points;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.services.HistoryService;
+import dev.cortex.cortexbot.services.LedgerService;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+
+@Component
+public class HistoryCommand extends SlashCommand {
+
+    private final HistoryService historyService;
+    private final LedgerService ledgerService;
+
+    public HistoryCommand(HistoryService historyService, LedgerService ledgerService){
+        this.historyService = historyService;
+        this.ledgerService = ledgerService;
+        this.name = "history";
+        this.help = "See where your or someone else's points came from";
+        this.options = List.of(new OptionData(OptionType.USER, "user", "The person involved"),
+                new OptionData(OptionType.STRING, "date", "Show the balance at the end of this day instead, like 2023-05-31"));
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+
+        User user = event.getOption("user") == null ? event.getUser() : event.getOption("user").getAsUser();
+
+        if (event.getOption("date") != null) {
+            LocalDate date;
+            try {
+                date = LocalDate.parse(event.getOption("date").getAsString());
+            } catch (DateTimeParseException e) {
+                event.reply("Dates are written like 2023-05-31.").setEphemeral(true).queue();
+                return;
+            }
+
+            //the last millisecond of that day in UTC
+            Date at = Date.from(date.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().minusMillis(1));
+            Long balance = ledgerService.getBalanceAt(user.getId(), at);
+            if (balance == null) {
+                Date oldest = ledgerService.getOldestSnapshot();
+                event.reply(oldest == null
+                        ? "No balances have been recorded yet, try again after the next daily snapshot."
+                        : "Balances are only kept back to <t:" + oldest.getTime() / 1000 + ":d>.").setEphemeral(true).queue();
+                return;
+            }
+            event.reply(user.getName() + " had " + balance + " points at the end of " + date + " (UTC).").setEphemeral(true).queue();
+            return;
+        }
+
+        //older pages are served by the buttons, see HistoryService
+        event.reply(historyService.getFirstPage(user.getId(), user.getName())).setEphemeral(true).queue();
+
+    }
+
+}
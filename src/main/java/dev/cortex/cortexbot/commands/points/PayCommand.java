@@ -2,8 +2,10 @@ package dev.cortex.cortexbot.commands.points;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import dev.cortex.cortexbot.model.CortexMember;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
@@ -17,13 +19,15 @@ import java.util.List;
 @Component
 public class PayCommand extends SlashCommand {
 
-    private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
 
     @Autowired
-    public PayCommand(CortexMemberRepository cortexMemberRepository, LoggingService loggingService) {
-        this.cortexMemberRepository = cortexMemberRepository;
+    public PayCommand(PointsService pointsService, LoggingService loggingService, NotificationService notificationService) {
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
         this.name = "pay";
         this.help = "give your points to someone else";
 
@@ -48,43 +52,37 @@ public class PayCommand extends SlashCommand {
             return;
         }
 
-        CortexMember recipient = cortexMemberRepository.findByUserIDIs(user.getId());
-        CortexMember payee = cortexMemberRepository.findByUserIDIs(event.getMember().getId());
+        int points = (int) event.getOption("amount").getAsDouble();
 
-        if (recipient != null) {
-
-            int points = (int) event.getOption("amount").getAsDouble();
+        if (points <= 0) {
+            event.getHook().sendMessage("You need to provide a positive number of points.").queue();
+            return;
+        }
 
-            if (points <= 0) {
-                event.getHook().sendMessage("You need to provide a positive number of points.").queue();
-                return;
-            }
+        //points are only moved between members we already know
+        if (!pointsService.exists(user.getId())) {
+            event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+            return;
+        }
 
-            if (payee.getPoints() >= points) {
-                System.out.println("recipient points: " + recipient.getPoints());
-                recipient.setPoints(recipient.getPoints() + points);
-                cortexMemberRepository.save(recipient);
-                System.out.println("recipient points: " + recipient.getPoints());
+        //take the points away from the payee, then give them to the recipient, only if they can afford it
+        PointsService.Transfer transfer = pointsService.transfer(event.getMember().getId(), user.getId(), points,
+                new PointsChangedEvent.Cause(PointsChangedEvent.Action.PAY, event.getMember().getId(), event.getOption("reason") == null ? null : event.getOption("reason").getAsString()));
 
-                //take the points away from the payee
-                payee.setPoints(payee.getPoints() - points);
-                cortexMemberRepository.save(payee);
+        if (transfer != null) {
 
-                event.getHook().sendMessage(points + " point(s) have been given to " + user.getName() + ". You now have a total of " + payee.getPoints() + " point(s).").queue();
+            CortexMember payee = transfer.payer();
+            CortexMember recipient = transfer.recipient();
 
-                //log the points payed
-                loggingService.logPointsPayed(user.getName(), points, event.getMember().getEffectiveName());
+            event.getHook().sendMessage(points + " point(s) have been given to " + user.getName() + ". You now have a total of " + payee.getPoints() + " point(s).").queue();
 
-                user.openPrivateChannel().flatMap(channel -> {
-                    return channel.sendMessage("You have been given " + points + " points by " + event.getMember().getEffectiveName() + ". " +
-                            "You now have a total of " + recipient.getPoints() + " community points.");
-                }).queue();
-            } else {
-                event.getHook().sendMessage("You do not have " + points + " point(s).").queue();
-            }
+            //log the points payed
+            loggingService.logPointsPayed(user.getName(), points, event.getMember().getEffectiveName());
 
+            notificationService.notify(user, "You have been given " + points + " points by " + event.getMember().getEffectiveName() + ". " +
+                        "You now have a total of " + recipient.getPoints() + " community points.");
         } else {
-            event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+            event.getHook().sendMessage("You do not have " + points + " point(s).").queue();
         }
     }
 
@@ -2,8 +2,10 @@ package dev.cortex.cortexbot.commands.points;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.model.CortexMember;
 import net.dv8tion.jda.api.entities.User;
@@ -19,15 +21,17 @@ import java.util.List;
 @Component
 public class SetPointsCommand extends SlashCommand {
 
-    private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final DiscordConfiguration discordConfiguration;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
 
     @Autowired
-    public SetPointsCommand(CortexMemberRepository cortexMemberRepository, DiscordConfiguration discordConfiguration, LoggingService loggingService){
-        this.cortexMemberRepository = cortexMemberRepository;
+    public SetPointsCommand(PointsService pointsService, DiscordConfiguration discordConfiguration, LoggingService loggingService, NotificationService notificationService){
+        this.pointsService = pointsService;
         this.discordConfiguration = discordConfiguration;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
         this.name = "set-points";
         this.help = "set points for a member";
 
@@ -64,35 +68,30 @@ public class SetPointsCommand extends SlashCommand {
                         return;
                     }
 
-                    CortexMember cortexMember = cortexMemberRepository.findByUserIDIs(user.getId());
+                    try{
 
-                    if (cortexMember != null){
-
-                        try{
-
-                            int points = (int) event.getOption("amount").getAsDouble();
-                            if (points <= 0){
-                                event.getHook().sendMessage("You need to provide a positive number of points.").queue();
-                                return;
-                            }
+                        int points = (int) event.getOption("amount").getAsDouble();
+                        if (points <= 0){
+                            event.getHook().sendMessage("You need to provide a positive number of points.").queue();
+                            return;
+                        }
 
-                            cortexMember.setPoints(points);
-                            cortexMemberRepository.save(cortexMember);
+                        CortexMember cortexMember = pointsService.setPoints(user.getId(), points,
+                                new PointsChangedEvent.Cause(PointsChangedEvent.Action.SET, event.getMember().getId(), event.getOption("reason") == null ? null : event.getOption("reason").getAsString()));
 
-                            event.getHook().sendMessage(points + " point(s) have been set for " + user.getName() + ".").queue();
+                        if (cortexMember == null){
+                            event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                            return;
+                        }
 
-                            //log the points given
-                            loggingService.logPointsSet(user.getName(), points, event.getMember().getEffectiveName());
+                        event.getHook().sendMessage(points + " point(s) have been set for " + user.getName() + ".").queue();
 
-                            user.openPrivateChannel().flatMap(channel -> {
-                                return channel.sendMessage("You now have a total of " + cortexMember.getPoints() + " community points.");
-                            }).queue();
-                        }catch (NumberFormatException ex){
-                            event.getHook().sendMessage("Unable to process request, invalid points value provided.").queue();
-                        }
+                        //log the points given
+                        loggingService.logPointsSet(user.getName(), points, event.getMember().getEffectiveName());
 
-                    }else{
-                        event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                        notificationService.notify(user, "You now have a total of " + cortexMember.getPoints() + " community points.");
+                    }catch (NumberFormatException ex){
+                        event.getHook().sendMessage("Unable to process request, invalid points value provided.").queue();
                     }
 
                 }
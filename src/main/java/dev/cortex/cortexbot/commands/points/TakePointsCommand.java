@@ -2,8 +2,10 @@ package dev.cortex.cortexbot.commands.points;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.model.CortexMember;
 import net.dv8tion.jda.api.entities.User;
@@ -18,9 +20,10 @@ import java.util.List;
 @Component
 public class TakePointsCommand extends SlashCommand {
 
-    private CortexMemberRepository cortexMemberRepository;
+    private PointsService pointsService;
     private DiscordConfiguration discordConfiguration;
     private LoggingService loggingService;
+    private NotificationService notificationService;
 
     public TakePointsCommand() {
         this.name = "take-points";
@@ -58,28 +61,24 @@ public class TakePointsCommand extends SlashCommand {
                         return;
                     }
 
-                    CortexMember cortexMember = cortexMemberRepository.findByUserIDIs(user.getId());
-
-                    if (cortexMember != null) {
+                    int points = (int) event.getOption("amount").getAsDouble();
+                    if (points <= 0) {
+                        event.getHook().sendMessage("You need to provide a positive number of points.").queue();
+                        return;
+                    }
 
-                        int points = (int) event.getOption("amount").getAsDouble();
-                        if (points <= 0) {
-                            event.getHook().sendMessage("You need to provide a positive number of points.").queue();
-                            return;
-                        }
+                    CortexMember cortexMember = pointsService.takePoints(user.getId(), points,
+                            new PointsChangedEvent.Cause(PointsChangedEvent.Action.TAKE, event.getMember().getId(), event.getOption("reason") == null ? null : event.getOption("reason").getAsString()));
 
-                        cortexMember.setPoints(cortexMember.getPoints() - points);
-                        cortexMemberRepository.save(cortexMember);
+                    if (cortexMember != null) {
 
                         event.getHook().sendMessage(points + " point(s) have been taken from " + user.getName() + ".").queue();
 
                         //log the points given
                         loggingService.logPointsTaken(user.getName(), points, event.getMember().getEffectiveName());
 
-                        user.openPrivateChannel().flatMap(channel -> {
-                            return channel.sendMessage(points + " points have been taken from you. " +
+                        notificationService.notify(user, points + " points have been taken from you. " +
                                     "You now have a total of " + cortexMember.getPoints() + " community points.");
-                        }).queue();
 
 
                     } else {
@@ -102,8 +101,13 @@ public class TakePointsCommand extends SlashCommand {
     }
 
     @Autowired
-    public void setMemberRepository(CortexMemberRepository cortexMemberRepository) {
-        this.cortexMemberRepository = cortexMemberRepository;
+    public void setNotificationService(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    @Autowired
+    public void setPointsService(PointsService pointsService) {
+        this.pointsService = pointsService;
     }
 
     @Autowired
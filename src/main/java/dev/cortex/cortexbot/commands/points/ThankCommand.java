@@ -2,9 +2,12 @@ package dev.cortex.cortexbot.commands.points;
 
 import com.jagrosh.jdautilities.command.SlashCommand;
 import com.jagrosh.jdautilities.command.SlashCommandEvent;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
-import dev.cortex.cortexbot.repositories.ThankedRepository;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
+import dev.cortex.cortexbot.services.ThankCooldownService;
+import dev.cortex.cortexbot.services.ThanksService;
 import dev.cortex.cortexbot.model.CortexMember;
 import dev.cortex.cortexbot.model.Thanked;
 import net.dv8tion.jda.api.entities.User;
@@ -19,14 +22,18 @@ import java.util.List;
 @Component
 public class ThankCommand extends SlashCommand {
 
-    private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
-    private final ThankedRepository thankedRepository;
+    private final NotificationService notificationService;
+    private final ThanksService thanksService;
+    private final ThankCooldownService thankCooldownService;
 
-    public ThankCommand(CortexMemberRepository cortexMemberRepository, LoggingService loggingService, ThankedRepository thankedRepository) {
-        this.cortexMemberRepository = cortexMemberRepository;
+    public ThankCommand(PointsService pointsService, LoggingService loggingService, NotificationService notificationService, ThanksService thanksService, ThankCooldownService thankCooldownService) {
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
-        this.thankedRepository = thankedRepository;
+        this.notificationService = notificationService;
+        this.thanksService = thanksService;
+        this.thankCooldownService = thankCooldownService;
         this.name = "thank";
         this.help = "Thank someone for helping you on the server. Optionally tip them an amount of points.";
 
@@ -58,78 +65,80 @@ public class ThankCommand extends SlashCommand {
             thanked.setReason(reason);
         }
 
-        //see if they have already thanked this person recently
-        //List<Thanked> thankedList = thankedRepository.findAllByPersonThankedEqualsAndThankByEquals(user.getId(), event.getMember().getId());
-
         //see if they are trying to give points to themself
         if (user.getId().equals(event.getMember().getId()) && !event.getMember().isOwner()) {
             event.getHook().sendMessage("You can't thank yourself dummy.").queue();
             return;
         }
 
-        //Get the cortex Member objects of these people using their discord ID's
-        CortexMember recipient = cortexMemberRepository.findByUserIDIs(user.getId());
-        CortexMember payee = cortexMemberRepository.findByUserIDIs(event.getMember().getId());
+        int points = 0;
+        if (event.getOption("amount") != null){
+            points = (int) event.getOption("amount").getAsDouble();
 
-        if (recipient != null) {
+            if (points <= 0) {
+                event.getHook().sendMessage("You need to provide a positive number of points.").setEphemeral(true).queue();
+                return;
+            }
 
-            int points = 0;
-            if (event.getOption("amount") != null){
-                points = (int) event.getOption("amount").getAsDouble();
+            thanked.setPoints(points);
+        }
 
-                if (points <= 0) {
-                    event.getHook().sendMessage("You need to provide a positive number of points.").setEphemeral(true).queue();
-                    return;
-                }
+        //thanks and tips only go to members we already know
+        if (!pointsService.exists(user.getId())) {
+            event.getHook().sendMessage("The user provided does not exist in our database.").setEphemeral(true).queue();
+            return;
+        }
 
-                thanked.setPoints(points);
-            }
+        //see if they have already thanked this person recently, this also claims the cooldown
+        long cooldown = thankCooldownService.tryThank(event.getMember().getId(), user.getId());
+        if (cooldown > 0) {
+            event.getHook().sendMessage("You have already thanked " + user.getName() + " recently. You can thank them again <t:" + (System.currentTimeMillis() + cooldown) / 1000 + ":R>.").setEphemeral(true).queue();
+            return;
+        }
 
-            //Make sure the person giving the points can afford it
-            if (payee.getPoints() >= points) {
+        //move the tip first, it only goes through if the person giving the points can afford it
+        PointsService.Transfer transfer;
+        try {
+            transfer = points == 0 ? null : pointsService.transfer(event.getMember().getId(), user.getId(), points,
+                    new PointsChangedEvent.Cause(PointsChangedEvent.Action.THANK, event.getMember().getId(), reason));
+        } catch (RuntimeException e) {
+            //nothing was moved, so they can try again straight away
+            thankCooldownService.cancel(event.getMember().getId(), user.getId());
+            e.printStackTrace();
+            event.getHook().sendMessage("An error occurred. Please try again later.").setEphemeral(true).queue();
+            return;
+        }
 
-                //store the thank in the db
-                thankedRepository.insert(thanked);
+        if (points == 0 || transfer != null) {
 
-                //did they give any points?
-                if (points == 0){
-                    event.getHook().sendMessage("You have thanked " + user.getName() + ".").setEphemeral(true).queue();
+            //store the thank in the db
+            thanksService.recordThank(thanked);
 
-                    String finalReason = reason;
-                    user.openPrivateChannel().flatMap(channel -> {
-                        return channel.sendMessage("You have been thanked by " + event.getMember().getEffectiveName() + "! " + ((finalReason != null) ? "Reason: " + finalReason : ""));
-                    }).queue();
-                }else{
+            //did they give any points?
+            if (points == 0){
+                event.getHook().sendMessage("You have thanked " + user.getName() + ".").setEphemeral(true).queue();
 
-                    //give the points to the recipient
-                    System.out.println("recipient points: " + recipient.getPoints());
-                    recipient.setPoints(recipient.getPoints() + points);
-                    cortexMemberRepository.save(recipient);
-                    System.out.println("recipient points: " + recipient.getPoints());
+                String finalReason = reason;
+                notificationService.notify(user, "You have been thanked by " + event.getMember().getEffectiveName() + "! " + ((finalReason != null) ? "Reason: " + finalReason : ""));
+            }else{
 
-                    //take the points away from the payee
-                    payee.setPoints(payee.getPoints() - points);
-                    cortexMemberRepository.save(payee);
+                CortexMember payee = transfer.payer();
+                CortexMember recipient = transfer.recipient();
 
-                    //log the points paid
-                    loggingService.logPointsPayed(user.getName(), points, event.getMember().getEffectiveName());
+                //log the points paid
+                loggingService.logPointsPayed(user.getName(), points, event.getMember().getEffectiveName());
 
-                    event.getHook().sendMessage(points + " point(s) have been given to " + user.getName() + " and they have been thanked. You now have a total of " + payee.getPoints() + " point(s).").setEphemeral(true).queue();
+                event.getHook().sendMessage(points + " point(s) have been given to " + user.getName() + " and they have been thanked. You now have a total of " + payee.getPoints() + " point(s).").setEphemeral(true).queue();
 
-                    int finalPoints = points;
-                    String finalReason = reason;
-                    user.openPrivateChannel().flatMap(channel -> {
-                        return channel.sendMessage("You have been thanked by " + event.getMember().getEffectiveName() + " and also tipped " + finalPoints + " points! " +
-                                        ((finalReason != null) ? "Reason: " + finalReason : "") + " \nYou now have a total of " + recipient.getPoints() + " community points.");
-                    }).queue();
+                int finalPoints = points;
+                String finalReason = reason;
+                notificationService.notify(user, "You have been thanked by " + event.getMember().getEffectiveName() + " and also tipped " + finalPoints + " points! " +
+                                    ((finalReason != null) ? "Reason: " + finalReason : "") + " \nYou now have a total of " + recipient.getPoints() + " community points.");
 
-                }
-            } else {
-                event.getHook().sendMessage("You do not have " + points + " point(s).").setEphemeral(true).queue();
             }
-
         } else {
-            event.getHook().sendMessage("The user provided does not exist in our database.").setEphemeral(true).queue();
+            thankCooldownService.cancel(event.getMember().getId(), user.getId());
+            event.getHook().sendMessage("You do not have " + points + " point(s).").setEphemeral(true).queue();
         }
 
     }
@@ -0,0 +1,57 @@
+package dev.cortex.cortexbot.commands.points;
+
+import com.jagrosh.jdautilities.command.SlashCommand;
+import com.jagrosh.jdautilities.command.SlashCommandEvent;
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.services.ThanksService;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class ThanksCommand extends SlashCommand {
+
+    private final ThanksService thanksService;
+
+    public ThanksCommand(ThanksService thanksService){
+        this.thanksService = thanksService;
+        this.name = "thanks";
+        this.help = "See how many thanks you or someone else has received and given";
+        this.options = List.of(new OptionData(OptionType.USER, "user", "The person involved"));
+    }
+
+    @Override
+    protected void execute(SlashCommandEvent event) {
+
+        User user = event.getOption("user") == null ? event.getUser() : event.getOption("user").getAsUser();
+
+        //the counters are kept on the member, nothing here counts thanks
+        CortexMember stats = thanksService.getStats(user.getId());
+
+        MessageCreateBuilder message = new MessageCreateBuilder();
+        if (stats == null) {
+            message.addContent(user.getName() + " has not been thanked or thanked anyone yet.").addContent("\n");
+        } else {
+            message.addContent("**" + user.getName() + "**").addContent("\n");
+            message.addContent("Thanks received: " + stats.getThanksReceived() + " (" + stats.getTipsReceived() + " pts in tips)").addContent("\n");
+            message.addContent("Thanks given: " + stats.getThanksGiven() + " (" + stats.getTipsGiven() + " pts in tips)").addContent("\n");
+        }
+
+        message.addContent("\n**Top helpers this month**").addContent("\n");
+        List<ThanksService.Helper> helpers = thanksService.getTopHelpers(30);
+        for (int i = 0; i < helpers.size(); i++) {
+            message.addContent("(" + (i + 1) + ") - <@" + helpers.get(i).userID() + "> *-* " + helpers.get(i).thanks() + " thanks").addContent("\n");
+        }
+        if (helpers.isEmpty()) {
+            message.addContent("Nobody has been thanked this month.").addContent("\n");
+        }
+
+        event.reply(message.build()).setEphemeral(true).queue();
+
+    }
+
+}
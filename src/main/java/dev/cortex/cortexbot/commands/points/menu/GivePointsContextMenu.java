@@ -2,11 +2,13 @@ package dev.cortex.cortexbot.commands.points.menu;
 
 import com.jagrosh.jdautilities.command.UserContextMenu;
 import com.jagrosh.jdautilities.command.UserContextMenuEvent;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.commands.IModalHandler;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.model.CortexMember;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
@@ -18,16 +20,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class GivePointsContextMenu extends UserContextMenu implements IModalHandler {
     
-    private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
     
     public GivePointsContextMenu(
             DiscordConfiguration discordConfiguration,
-            CortexMemberRepository cortexMemberRepository,
-            LoggingService loggingService
+            PointsService pointsService,
+            LoggingService loggingService,
+            NotificationService notificationService
     ) {
-        this.cortexMemberRepository = cortexMemberRepository;
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
         this.name = "Give Points";
         this.userPermissions = new Permission[] {
                 Permission.MODERATE_MEMBERS,
@@ -63,12 +68,15 @@ public class GivePointsContextMenu extends UserContextMenu implements IModalHand
         String pointsString = event.getValue("points").getAsString();
         String reason = event.getValue("reason").getAsString();
 
-        CortexMember targetMember = cortexMemberRepository.findByUserIDIs(target.getId());
-
         try {
             int points = Math.abs(Integer.parseInt(pointsString));
-            targetMember.setPoints(targetMember.getPoints() + points);
-            cortexMemberRepository.save(targetMember);
+            CortexMember targetMember = pointsService.addPoints(target.getId(), points,
+                    new PointsChangedEvent.Cause(PointsChangedEvent.Action.GIVE, manager.getId(), reason));
+
+            if (targetMember == null) {
+                event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                return;
+            }
 
             loggingService.logPointsGiven(target, points, manager, reason);
             
@@ -80,9 +88,7 @@ public class GivePointsContextMenu extends UserContextMenu implements IModalHand
             }
             builder.append("You now have a total of ").append(targetMember.getPoints()).append(" community points in Cortex Development.");
 
-            target.openPrivateChannel().flatMap(privateChannel -> privateChannel.sendMessage(
-                    builder.toString()
-            )).queue();
+            notificationService.notify(target, builder.toString());
             
         } catch (NumberFormatException exception) {
             event.getHook().sendMessage("Points must be a positive integer, dummy.").queue();
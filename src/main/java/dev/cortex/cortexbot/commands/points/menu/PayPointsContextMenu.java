@@ -2,10 +2,13 @@ package dev.cortex.cortexbot.commands.points.menu;
 
 import com.jagrosh.jdautilities.command.UserContextMenu;
 import com.jagrosh.jdautilities.command.UserContextMenuEvent;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.commands.IModalHandler;
 import dev.cortex.cortexbot.model.CortexMember;
 import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.interactions.components.text.TextInput;
@@ -17,20 +20,36 @@ import org.springframework.stereotype.Component;
 public class PayPointsContextMenu extends UserContextMenu implements IModalHandler {
 
     private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
 
     public PayPointsContextMenu(
             CortexMemberRepository cortexMemberRepository,
-            LoggingService loggingService
+            PointsService pointsService,
+            LoggingService loggingService,
+            NotificationService notificationService
     ) {
         this.cortexMemberRepository = cortexMemberRepository;
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
         this.name = "Pay Points";
     }
 
     @Override
     protected void execute(UserContextMenuEvent event) {
+        //points are only moved between members we already know
+        if (!cortexMemberRepository.existsByUserID(event.getTarget().getId())) {
+            event.reply("The user provided does not exist in our database.").setEphemeral(true).queue();
+            return;
+        }
+
         CortexMember member = cortexMemberRepository.findByUserIDIs(event.getUser().getId());
+        if (member == null) {
+            event.reply("You do not have any points yet.").setEphemeral(true).queue();
+            return;
+        }
         
         TextInput points = TextInput.create("points", "Amount", TextInputStyle.SHORT)
                 .setRequiredRange(1, String.valueOf(member.getPoints()).length())
@@ -59,19 +78,22 @@ public class PayPointsContextMenu extends UserContextMenu implements IModalHandl
         String pointsString = event.getValue("points").getAsString();
         String reason = event.getValue("reason").getAsString();
         
-        CortexMember payerMember = cortexMemberRepository.findByUserIDIs(payer.getId());
-        CortexMember payeeMember = cortexMemberRepository.findByUserIDIs(payee.getId());
-
         try {
             int points = Math.abs(Integer.parseInt(pointsString));
             
-            if (payerMember.getPoints() >= points) {
-                
-                payerMember.takePoints(points);
-                payeeMember.addPoints(points);
-                
-                cortexMemberRepository.save(payerMember);
-                cortexMemberRepository.save(payeeMember);
+            if (points == 0) {
+                event.getHook().sendMessage("You need to provide a positive number of points.").queue();
+                return;
+            }
+
+            //only goes through if the payer can afford it
+            PointsService.Transfer transfer = pointsService.transfer(payer.getId(), payee.getId(), points,
+                    new PointsChangedEvent.Cause(PointsChangedEvent.Action.PAY, payer.getId(), reason));
+
+            if (transfer != null) {
+
+                CortexMember payerMember = transfer.payer();
+                CortexMember payeeMember = transfer.recipient();
                 
                 loggingService.logPointsPayed(payee, points, payer, reason);
 
@@ -88,9 +110,7 @@ public class PayPointsContextMenu extends UserContextMenu implements IModalHandl
                 }
                 builder.append("You now have a total of ").append(payeeMember.getPoints()).append(" community points in Cortex Development.");
 
-                payee.openPrivateChannel().flatMap(privateChannel -> privateChannel.sendMessage(
-                        builder.toString()
-                )).queue();
+                notificationService.notify(payee, builder.toString());
                 
             } else {
                 event.getHook().sendMessage("You do not have " + points + " point(s).").queue();
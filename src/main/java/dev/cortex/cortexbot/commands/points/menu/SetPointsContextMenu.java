@@ -2,11 +2,13 @@ package dev.cortex.cortexbot.commands.points.menu;
 
 import com.jagrosh.jdautilities.command.UserContextMenu;
 import com.jagrosh.jdautilities.command.UserContextMenuEvent;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.commands.IModalHandler;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.model.CortexMember;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
@@ -18,16 +20,19 @@ import org.springframework.stereotype.Component;
 @Component
 public class SetPointsContextMenu extends UserContextMenu implements IModalHandler {
 
-    private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
     
     public SetPointsContextMenu(
             DiscordConfiguration discordConfiguration,
-            CortexMemberRepository cortexMemberRepository,
-            LoggingService loggingService
+            PointsService pointsService,
+            LoggingService loggingService,
+            NotificationService notificationService
     ) {
-        this.cortexMemberRepository = cortexMemberRepository;
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
         this.name = "Set Points";
         this.userPermissions = new Permission[] {
                 Permission.MODERATE_MEMBERS,
@@ -63,20 +68,21 @@ public class SetPointsContextMenu extends UserContextMenu implements IModalHandl
         String pointsString = event.getValue("points").getAsString();
         String reason = event.getValue("reason").getAsString();
 
-        CortexMember targetMember = cortexMemberRepository.findByUserIDIs(target.getId());
-
         try {
             int points = Math.abs(Integer.parseInt(pointsString));
-            targetMember.setPoints(points);
-            cortexMemberRepository.save(targetMember);
+            CortexMember targetMember = pointsService.setPoints(target.getId(), points,
+                    new PointsChangedEvent.Cause(PointsChangedEvent.Action.SET, manager.getId(), reason));
+
+            if (targetMember == null) {
+                event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                return;
+            }
             
             loggingService.logPointsSet(target, points, manager, reason);
 
             event.getHook().sendMessage(points + " point(s) have been set for " + target.getName() + ".").queue();
 
-            target.openPrivateChannel().flatMap(privateChannel -> privateChannel.sendMessage(
-                    "You now have a total of " + targetMember.getPoints() + " community points."
-            )).queue();
+            notificationService.notify(target, "You now have a total of " + targetMember.getPoints() + " community points.");
             
         } catch (NumberFormatException exception) {
             event.getHook().sendMessage("Points must be a positive integer, dummy.").queue();
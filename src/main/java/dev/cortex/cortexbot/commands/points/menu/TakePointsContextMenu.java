@@ -2,11 +2,14 @@ package dev.cortex.cortexbot.commands.points.menu;
 
 import com.jagrosh.jdautilities.command.UserContextMenu;
 import com.jagrosh.jdautilities.command.UserContextMenuEvent;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.commands.IModalHandler;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.model.CortexMember;
 import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
@@ -19,15 +22,21 @@ import org.springframework.stereotype.Component;
 public class TakePointsContextMenu extends UserContextMenu implements IModalHandler {
 
     private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
 
     public TakePointsContextMenu(
             CortexMemberRepository cortexMemberRepository,
+            PointsService pointsService,
             LoggingService loggingService,
+            NotificationService notificationService,
             DiscordConfiguration discordConfiguration
     ) {
         this.cortexMemberRepository = cortexMemberRepository;
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
         this.name = "Take Points";
         this.userPermissions = new Permission[] {
                 Permission.MODERATE_MEMBERS,
@@ -65,22 +74,22 @@ public class TakePointsContextMenu extends UserContextMenu implements IModalHand
         String pointsString = event.getValue("points").getAsString();
         String reason = event.getValue("reason").getAsString();
 
-        CortexMember targetMember = cortexMemberRepository.findByUserIDIs(target.getId());
-
         try {
             int points = Math.abs(Integer.parseInt(pointsString));
 
-            targetMember.takePoints(points);
-            cortexMemberRepository.save(targetMember);
-            
+            CortexMember targetMember = pointsService.takePoints(target.getId(), points,
+                    new PointsChangedEvent.Cause(PointsChangedEvent.Action.TAKE, manager.getId(), reason));
+            if (targetMember == null) {
+                event.getHook().sendMessage("The user provided does not exist in our database.").queue();
+                return;
+            }
+
             loggingService.logPointsTaken(target, points, manager, reason);
 
             event.getHook().sendMessage(points + " point(s) have been taken from " + target.getName() + ".").queue();
 
-            target.openPrivateChannel().flatMap(privateChannel -> privateChannel.sendMessage(
-                    points + " points have been taken from you. " + 
-                            "You now have a total of " + targetMember.getPoints() + " community points."
-            )).queue();
+            notificationService.notify(target, points + " points have been taken from you. " + 
+                            "You now have a total of " + targetMember.getPoints() + " community points.");
             
         } catch (NumberFormatException exception) {
             event.getHook().sendMessage("Points must be a positive integer, dummy.").queue();
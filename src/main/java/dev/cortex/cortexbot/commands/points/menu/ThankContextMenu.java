@@ -2,10 +2,16 @@ package dev.cortex.cortexbot.commands.points.menu;
 
 import com.jagrosh.jdautilities.command.UserContextMenu;
 import com.jagrosh.jdautilities.command.UserContextMenuEvent;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.commands.IModalHandler;
 import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.model.Thanked;
 import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import dev.cortex.cortexbot.services.LoggingService;
+import dev.cortex.cortexbot.services.PointsService;
+import dev.cortex.cortexbot.services.NotificationService;
+import dev.cortex.cortexbot.services.ThankCooldownService;
+import dev.cortex.cortexbot.services.ThanksService;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.interactions.components.text.TextInput;
@@ -13,24 +19,56 @@ import net.dv8tion.jda.api.interactions.components.text.TextInputStyle;
 import net.dv8tion.jda.api.interactions.modals.Modal;
 import org.springframework.stereotype.Component;
 
+import java.util.Date;
+
 @Component
 public class ThankContextMenu extends UserContextMenu implements IModalHandler {
 
     private final CortexMemberRepository cortexMemberRepository;
+    private final PointsService pointsService;
     private final LoggingService loggingService;
+    private final NotificationService notificationService;
+    private final ThanksService thanksService;
+    private final ThankCooldownService thankCooldownService;
     
     public ThankContextMenu(
             CortexMemberRepository cortexMemberRepository,
-            LoggingService loggingService
+            PointsService pointsService,
+            LoggingService loggingService,
+            NotificationService notificationService,
+            ThanksService thanksService,
+            ThankCooldownService thankCooldownService
     ) {
         this.cortexMemberRepository = cortexMemberRepository;
+        this.pointsService = pointsService;
         this.loggingService = loggingService;
+        this.notificationService = notificationService;
+        this.thanksService = thanksService;
+        this.thankCooldownService = thankCooldownService;
         this.name = "Thank Points";
     }
 
     @Override
     protected void execute(UserContextMenuEvent event) {
+
+        //don't make them fill in the modal just to be told no
+        long cooldown = thankCooldownService.getRemainingMillis(event.getUser().getId(), event.getTarget().getId());
+        if (cooldown > 0) {
+            event.reply("You have already thanked " + event.getTarget().getName() + " recently. You can thank them again <t:" + (System.currentTimeMillis() + cooldown) / 1000 + ":R>.").setEphemeral(true).queue();
+            return;
+        }
+
+        //points are only moved between members we already know
+        if (!cortexMemberRepository.existsByUserID(event.getTarget().getId())) {
+            event.reply("The user provided does not exist in our database.").setEphemeral(true).queue();
+            return;
+        }
+
         CortexMember member = cortexMemberRepository.findByUserIDIs(event.getUser().getId());
+        if (member == null) {
+            event.reply("You do not have any points yet.").setEphemeral(true).queue();
+            return;
+        }
         
         TextInput points = TextInput.create("points", "Amount", TextInputStyle.SHORT)
                 .setRequiredRange(1, String.valueOf(member.getPoints()).length())
@@ -59,19 +97,47 @@ public class ThankContextMenu extends UserContextMenu implements IModalHandler {
         String pointsString = event.getValue("points").getAsString();
         String reason = event.getValue("reason").getAsString();
 
-        CortexMember payerMember = cortexMemberRepository.findByUserIDIs(payer.getId());
-        CortexMember payeeMember = cortexMemberRepository.findByUserIDIs(payee.getId());
-
         try {
             int points = Math.abs(Integer.parseInt(pointsString));
 
-            if (payerMember.getPoints() >= points) {
+            //abs of the lowest int is still negative
+            if (points <= 0) {
+                event.getHook().sendMessage("You need to provide a positive number of points.").queue();
+                return;
+            }
+
+            //checked again here, the cooldown is only claimed once the modal comes back
+            long cooldown = thankCooldownService.tryThank(payer.getId(), payee.getId());
+            if (cooldown > 0) {
+                event.getHook().sendMessage("You have already thanked " + payee.getName() + " recently. You can thank them again <t:" + (System.currentTimeMillis() + cooldown) / 1000 + ":R>.").queue();
+                return;
+            }
+
+            //only goes through if the payer can afford it
+            PointsService.Transfer transfer;
+            try {
+                transfer = pointsService.transfer(payer.getId(), payee.getId(), points,
+                        new PointsChangedEvent.Cause(PointsChangedEvent.Action.THANK, payer.getId(), reason));
+            } catch (RuntimeException e) {
+                //nothing was moved, so they can try again straight away
+                thankCooldownService.cancel(payer.getId(), payee.getId());
+                e.printStackTrace();
+                event.getHook().sendMessage("An error occurred. Please try again later.").queue();
+                return;
+            }
+
+            if (transfer != null) {
 
-                payerMember.takePoints(points);
-                payeeMember.addPoints(points);
+                CortexMember payerMember = transfer.payer();
+                CortexMember payeeMember = transfer.recipient();
 
-                cortexMemberRepository.save(payerMember);
-                cortexMemberRepository.save(payeeMember);
+                Thanked thanked = new Thanked();
+                thanked.setThankBy(payer.getId());
+                thanked.setPersonThanked(payee.getId());
+                thanked.setWhen(new Date());
+                thanked.setPoints(points);
+                thanked.setReason(reason.isBlank() ? null : reason);
+                thanksService.recordThank(thanked);
 
                 loggingService.logPointsPayed(payee, points, payer, reason);
 
@@ -91,11 +157,10 @@ public class ThankContextMenu extends UserContextMenu implements IModalHandler {
                         .append(payeeMember.getPoints())
                         .append(" community points.");
                 
-                payee.openPrivateChannel().flatMap(privateChannel -> privateChannel.sendMessage(
-                        builder.toString()
-                )).queue();
+                notificationService.notify(payee, builder.toString());
 
             } else {
+                thankCooldownService.cancel(payer.getId(), payee.getId());
                 event.getHook().sendMessage("You do not have " + points + " point(s).").queue();
             }
 
@@ -0,0 +1,49 @@
+package dev.cortex.cortexbot.events;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Published whenever member points change, either one at a time through the
+ * PointsService or in batches when message activity is flushed.
+ */
+public record PointsChangedEvent(Cause cause, List<Change> changes) {
+
+    public enum Action {
+        GIVE,
+        TAKE,
+        SET,
+        PAY,
+        THANK,
+        MESSAGE,
+        //changes made by the bot itself, like refunds and maintenance
+        ADJUST,
+        //economy wide resets, decays and clamps
+        ECONOMY
+    }
+
+    /**
+     * Why the points changed
+     *
+     * @param actorID the user who made the change, or null if the bot did
+     */
+    public record Cause(Action action, @Nullable String actorID, @Nullable String reason) {
+
+        public static final Cause ADJUSTMENT = new Cause(Action.ADJUST, null, null);
+
+        public static Cause of(Action action, @Nullable String actorID) {
+            return new Cause(action, actorID, null);
+        }
+
+    }
+
+    /**
+     * @param delta   how many points were added, negative if points were taken
+     * @param balance the member's points after the change, or null when only the delta is known
+     * @param version the member's pointsVersion after the change, only meaningful with a balance
+     */
+    public record Change(String userID, long delta, @Nullable Long balance, long version) {
+    }
+
+}
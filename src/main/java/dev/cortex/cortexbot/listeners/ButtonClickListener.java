@@ -1,6 +1,9 @@
 package dev.cortex.cortexbot.listeners;
 
+import dev.cortex.cortexbot.commands.points.EconomyCommand;
 import dev.cortex.cortexbot.services.ChallengeService;
+import dev.cortex.cortexbot.services.HistoryService;
+import dev.cortex.cortexbot.services.LeaderboardService;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
@@ -19,15 +22,35 @@ import java.util.Objects;
 @Component
 public class ButtonClickListener extends ListenerAdapter {
     private final ChallengeService challengeService;
+    private final LeaderboardService leaderboardService;
+    private final HistoryService historyService;
+    private final EconomyCommand economyCommand;
 
     @Autowired
-    public ButtonClickListener(ChallengeService challengeService) {
+    public ButtonClickListener(ChallengeService challengeService, LeaderboardService leaderboardService, HistoryService historyService, EconomyCommand economyCommand) {
         this.challengeService = challengeService;
+        this.leaderboardService = leaderboardService;
+        this.historyService = historyService;
+        this.economyCommand = economyCommand;
     }
 
     @Override
     public void onButtonInteraction(@NotNull ButtonInteractionEvent event) {
 
+        //page buttons edit the leaderboard in place instead of replying
+        if(leaderboardService.isPageButton(event.getButton().getId())){
+            leaderboardService.turnPage(event);
+            return;
+        }
+        if(historyService.isPageButton(event.getButton().getId())){
+            historyService.turnPage(event);
+            return;
+        }
+        if(economyCommand.isEconomyButton(event.getButton().getId())){
+            economyCommand.handleClick(event);
+            return;
+        }
+
         if(event.getButton().getId().equalsIgnoreCase("i-got-helped")){
 
             TextInput email = TextInput.create("helper", "Who helped you?", TextInputStyle.SHORT)
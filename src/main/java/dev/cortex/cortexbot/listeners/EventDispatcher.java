@@ -0,0 +1,200 @@
+package dev.cortex.cortexbot.listeners;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.guild.member.GenericGuildMemberEvent;
+import net.dv8tion.jda.api.events.interaction.GenericInteractionCreateEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Event manager that takes gateway events off JDA's event thread. Message and gateway events
+ * get their own sets of single-threaded lanes with bounded queues, and events are striped
+ * across the lanes by user, so one member's events are still handled in order while a
+ * slow query for one member does not hold up everyone else. When a lane is full the gateway
+ * thread waits for room, so the event still runs after the ones queued before it.
+ * Interactions are not striped, they have to be acknowledged within 3 seconds, so they go to a
+ * pool that hands each one to an idle thread straight away instead of queueing it behind
+ * another member's slow handler. The trade off is that two interactions from the same member
+ * can run at the same time or out of order, their handlers must not depend on that order.
+ */
+@Component
+public class EventDispatcher extends InterfacedEventManager {
+
+    public enum Category {
+        INTERACTION,
+        MESSAGE,
+        GATEWAY
+    }
+
+    private final Map<Category, ThreadPoolExecutor[]> lanes = new EnumMap<>(Category.class);
+    private final Map<Category, Timer> waitTimers = new EnumMap<>(Category.class);
+    private final Map<Category, Counter> rejections = new EnumMap<>(Category.class);
+    private final Counter lateInteractions;
+    private final long interactionWarnNanos;
+
+    public EventDispatcher(MeterRegistry meterRegistry,
+                           @Value("${cortex.events.interaction-threads:4}") int interactionThreads,
+                           @Value("${cortex.events.interaction-max-threads:32}") int interactionMaxThreads,
+                           @Value("${cortex.events.message-lanes:4}") int messageLanes,
+                           @Value("${cortex.events.gateway-lanes:1}") int gatewayLanes,
+                           @Value("${cortex.events.queue-capacity:1000}") int queueCapacity,
+                           @Value("${cortex.events.interaction-warn-millis:2000}") long interactionWarnMillis) {
+        this.interactionWarnNanos = TimeUnit.MILLISECONDS.toNanos(interactionWarnMillis);
+
+        lanes.put(Category.INTERACTION, new ThreadPoolExecutor[]{createInteractionPool(interactionThreads, interactionMaxThreads)});
+        lanes.put(Category.MESSAGE, createLanes(Category.MESSAGE, messageLanes, queueCapacity));
+        lanes.put(Category.GATEWAY, createLanes(Category.GATEWAY, gatewayLanes, queueCapacity));
+
+        for (Category category : Category.values()) {
+            String tag = category.name().toLowerCase();
+            ThreadPoolExecutor[] categoryLanes = lanes.get(category);
+
+            Gauge.builder("cortex.events.queue.depth", categoryLanes,
+                            executors -> Arrays.stream(executors).mapToInt(executor -> executor.getQueue().size()).sum())
+                    .description("Events waiting to be handled")
+                    .tag("category", tag)
+                    .register(meterRegistry);
+            waitTimers.put(category, Timer.builder("cortex.events.wait")
+                    .description("Time an event spent queued before its listeners ran")
+                    .tag("category", tag)
+                    .register(meterRegistry));
+            rejections.put(category, Counter.builder("cortex.events.rejected")
+                    .description("Events that waited on the gateway thread for room in their full lane, or interactions run on it because every interaction thread was busy")
+                    .tag("category", tag)
+                    .register(meterRegistry));
+        }
+
+        this.lateInteractions = Counter.builder("cortex.events.interaction.late")
+                .description("Interactions that waited long enough to risk missing the 3 second acknowledgement window")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void handle(@NotNull GenericEvent event) {
+        Category category = categoryOf(event);
+        ThreadPoolExecutor[] categoryLanes = lanes.get(category);
+        ThreadPoolExecutor lane = categoryLanes[Math.floorMod(Long.hashCode(keyOf(event)), categoryLanes.length)];
+        long queuedAt = System.nanoTime();
+
+        try {
+            lane.execute(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                waitTimers.get(category).record(waited, TimeUnit.NANOSECONDS);
+
+                if (category == Category.INTERACTION && waited > interactionWarnNanos) {
+                    lateInteractions.increment();
+                    System.out.println("Interaction waited " + TimeUnit.NANOSECONDS.toMillis(waited) + "ms before being handled");
+                }
+
+                super.handle(event);
+            });
+        } catch (RejectedExecutionException e) {
+            //every interaction thread is busy, or shutting down, run it here rather than drop it,
+            //interactions have no order to keep and full lanes wait for room instead of getting here
+            if (category == Category.INTERACTION) {
+                rejections.get(category).increment();
+            }
+            super.handle(event);
+        }
+    }
+
+    private Category categoryOf(GenericEvent event) {
+        if (event instanceof GenericInteractionCreateEvent) {
+            return Category.INTERACTION;
+        } else if (event instanceof GenericMessageEvent) {
+            return Category.MESSAGE;
+        }
+        return Category.GATEWAY;
+    }
+
+    //events with the same key always land on the same lane, which keeps them in order
+    private long keyOf(GenericEvent event) {
+        if (event instanceof GenericInteractionCreateEvent interaction) {
+            return interaction.getUser().getIdLong();
+        } else if (event instanceof MessageReceivedEvent message) {
+            return message.getAuthor().getIdLong();
+        } else if (event instanceof GenericMessageReactionEvent reaction) {
+            return reaction.getUserIdLong();
+        } else if (event instanceof GenericMessageEvent message) {
+            return message.getChannel().getIdLong();
+        } else if (event instanceof GenericGuildMemberEvent member) {
+            return member.getUser().getIdLong();
+        }
+        return 0;
+    }
+
+    //no queue, an interaction either gets a thread right away or, with every thread busy, runs on the gateway thread
+    private ThreadPoolExecutor createInteractionPool(int threads, int maxThreads) {
+        AtomicInteger created = new AtomicInteger();
+        return new ThreadPoolExecutor(Math.max(threads, 1), Math.max(maxThreads, threads), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "events-interaction-" + created.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private ThreadPoolExecutor[] createLanes(Category category, int count, int queueCapacity) {
+        ThreadPoolExecutor[] executors = new ThreadPoolExecutor[Math.max(count, 1)];
+
+        for (int i = 0; i < executors.length; i++) {
+            String name = "events-" + category.name().toLowerCase() + "-" + i;
+            executors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }, (task, executor) -> waitForRoom(category, task, executor));
+        }
+
+        return executors;
+    }
+
+    //the lane is full, block the gateway until there is room, running the event here would jump the lane's queue
+    private void waitForRoom(Category category, Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Event lane is shut down");
+        }
+
+        rejections.get(category).increment();
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for room in the event lane", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor[] categoryLanes : lanes.values()) {
+            for (ThreadPoolExecutor lane : categoryLanes) {
+                lane.shutdown();
+            }
+        }
+        for (ThreadPoolExecutor[] categoryLanes : lanes.values()) {
+            for (ThreadPoolExecutor lane : categoryLanes) {
+                lane.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+}
@@ -1,11 +1,9 @@
 package dev.cortex.cortexbot.listeners;
 
 import dev.cortex.cortexbot.commands.menu.HelpingMessageContextMenu;
-import dev.cortex.cortexbot.commands.points.ResetPointsSlashCommand;
 import dev.cortex.cortexbot.commands.points.menu.*;
 import dev.cortex.cortexbot.commands.points.menu.*;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
-import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,13 +25,6 @@ public class InteractionListener extends ListenerAdapter {
     @Autowired
     private ThankContextMenu thankContextMenu;
 
-    @Override
-    public void onButtonInteraction(@NotNull ButtonInteractionEvent event) {
-        if (event.getButton().getId().contains("economy-reset")) {
-            ResetPointsSlashCommand.handleClick(event);
-        }
-    }
-
     @Override
     public void onModalInteraction(@NotNull ModalInteractionEvent event) {
         event.deferReply(true).queue();
@@ -1,59 +1,52 @@
 package dev.cortex.cortexbot.listeners;
 
-import dev.cortex.cortexbot.repositories.BountyRepository;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import jakarta.annotation.Nonnull;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
-import dev.cortex.cortexbot.model.Bounty;
-import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.services.ActivityAggregator;
+import dev.cortex.cortexbot.services.AutoDeleteService;
+import dev.cortex.cortexbot.services.BountyService;
+import dev.cortex.cortexbot.services.SuggestionService;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.events.message.MessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionAddEvent;
+import net.dv8tion.jda.api.events.message.react.MessageReactionRemoveEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
 import java.util.Objects;
 import java.util.Random;
-import java.util.concurrent.TimeUnit;
 
 @Component
 public class MessageListeners extends ListenerAdapter{
     private final Random random;
-    private final CortexMemberRepository cortexMemberRepository;
+    private final ActivityAggregator activityAggregator;
     private final DiscordConfiguration discordConfiguration;
-    private final BountyRepository bountyRepository;
+    private final BountyService bountyService;
+    private final AutoDeleteService autoDeleteService;
+    private final SuggestionService suggestionService;
 
     @Autowired
-    public MessageListeners(CortexMemberRepository cortexMemberRepository, DiscordConfiguration discordConfiguration, BountyRepository bountyRepository){
+    public MessageListeners(ActivityAggregator activityAggregator, DiscordConfiguration discordConfiguration, BountyService bountyService, AutoDeleteService autoDeleteService, SuggestionService suggestionService){
         this.random = new Random();
-        this.cortexMemberRepository = cortexMemberRepository;
+        this.activityAggregator = activityAggregator;
         this.discordConfiguration = discordConfiguration;
-        this.bountyRepository = bountyRepository;
+        this.bountyService = bountyService;
+        this.autoDeleteService = autoDeleteService;
+        this.suggestionService = suggestionService;
     }
 
     @Override
     public void onMessageReceived(@Nonnull MessageReceivedEvent event) {
 
-        if (event.getChannel().getId().equalsIgnoreCase("855669438170267698")){
-            event.getGuild().getTextChannelById(event.getChannel().getId()).deleteMessageById(event.getMessageId()).completeAfter(5, TimeUnit.SECONDS);
-        }
+        //messages in ephemeral channels are purged later in batches
+        autoDeleteService.schedule(event.getMessage());
 
         if (!event.getAuthor().isBot()) {
 
             //see if the message was sent in an active bounty channel
-            List<Bounty> bounties = bountyRepository.findAllByFinishedEquals(false);
-            for (Bounty bounty : bounties){
-                if (bounty.getChannelId().equalsIgnoreCase(event.getChannel().getId())){
-                    bounty.setWhenLastActive(System.currentTimeMillis());
-                    bountyRepository.save(bounty);
-                    break;
-                }
-            }
-
-            if (event.getChannel().getId().equalsIgnoreCase("856772595294142475")){
-                event.getGuild().getTextChannelById(event.getChannel().getId()).deleteMessageById(event.getMessageId()).completeAfter(5, TimeUnit.SECONDS);
-            }
+            bountyService.recordActivity(event.getChannel().getId());
 
 //            if (!event.getMessage().getMentionedMembers().isEmpty() && event.getMessage().getMentionedMembers().get(0).getId().equalsIgnoreCase("250856681724968960")){
 //                System.out.println(event.getMessage().getMentionedMembers());
@@ -61,32 +54,9 @@ public class MessageListeners extends ListenerAdapter{
 //                return;
 //            }
 
-            if (cortexMemberRepository.existsByUserID(event.getAuthor().getId())) {
-
-                CortexMember cortexMember = cortexMemberRepository.findByUserIDIs(event.getAuthor().getId());
-
-                cortexMember.setMessagesSent(cortexMember.getMessagesSent() + 1);
-                cortexMember.setName(event.getAuthor().getAsTag());
-
-                if (random.nextInt(5) == 3)
-                    cortexMember.setPoints(cortexMember.getPoints() + random.nextInt(7));
-
-                cortexMemberRepository.save(cortexMember);
-
-            } else {
-
-                CortexMember cortexMember = new CortexMember();
-
-                cortexMember.setUserID(event.getAuthor().getId());
-                cortexMember.setName(event.getAuthor().getAsTag());
-
-                cortexMember.setMessagesSent(1);
-                cortexMember.setPoints(1);
-
-                cortexMemberRepository.save(cortexMember);
-
-            }
-
+            //member activity is written behind in batches by the aggregator
+            long points = random.nextInt(5) == 3 ? random.nextInt(7) : 0;
+            activityAggregator.recordMessage(event.getAuthor().getId(), event.getAuthor().getAsTag(), points);
 
             if (event.getChannel().getIdLong() == (discordConfiguration.getSuggestionsChannelId())){
                 EmbedBuilder eb = new EmbedBuilder();
@@ -97,6 +67,7 @@ public class MessageListeners extends ListenerAdapter{
                     m.addReaction(Objects.requireNonNull(event.getGuild().getEmojiById(discordConfiguration.getGreenTickId()))).queue();
                     m.addReaction(Objects.requireNonNull(event.getGuild().getEmojiById(discordConfiguration.getNeutralTickId()))).queue();
                     m.addReaction(Objects.requireNonNull(event.getGuild().getEmojiById(discordConfiguration.getRedTickId()))).queue();
+                    suggestionService.create(m, event.getAuthor(), event.getMessage().getContentRaw());
                 });
                 event.getMessage().delete().queue();
             }
@@ -105,4 +76,30 @@ public class MessageListeners extends ListenerAdapter{
         }
     }
 
+    @Override
+    public void onMessageReactionAdd(@Nonnull MessageReactionAddEvent event) {
+        if (isSuggestionVote(event.getChannel().getIdLong(), event.getUserIdLong(), event.getJDA().getSelfUser().getIdLong())) {
+            suggestionService.recordVote(event.getMessageId(), event.getEmoji(), 1);
+        }
+    }
+
+    @Override
+    public void onMessageReactionRemove(@Nonnull MessageReactionRemoveEvent event) {
+        if (isSuggestionVote(event.getChannel().getIdLong(), event.getUserIdLong(), event.getJDA().getSelfUser().getIdLong())) {
+            suggestionService.recordVote(event.getMessageId(), event.getEmoji(), -1);
+        }
+    }
+
+    @Override
+    public void onMessageDelete(@Nonnull MessageDeleteEvent event) {
+        if (event.getChannel().getIdLong() == discordConfiguration.getSuggestionsChannelId()) {
+            suggestionService.delete(event.getMessageId());
+        }
+    }
+
+    //the bot's own ticks are there to vote with, they are not votes
+    private boolean isSuggestionVote(long channelID, long userID, long selfID) {
+        return channelID == discordConfiguration.getSuggestionsChannelId() && userID != selfID;
+    }
+
 }
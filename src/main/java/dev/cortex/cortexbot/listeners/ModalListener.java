@@ -1,8 +1,7 @@
 package dev.cortex.cortexbot.listeners;
 
-import dev.cortex.cortexbot.repositories.ChallengeRepository;
 import dev.cortex.cortexbot.model.challenges.Challenge;
-import dev.cortex.cortexbot.model.challenges.ChallengeStatus;
+import dev.cortex.cortexbot.services.ChallengeState;
 import net.dv8tion.jda.api.events.interaction.ModalInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
@@ -15,10 +14,10 @@ import java.util.Date;
 @Service
 public class ModalListener extends ListenerAdapter {
 
-    private final ChallengeRepository challengeRepository;
+    private final ChallengeState challengeState;
 
-    public ModalListener(ChallengeRepository challengeRepository) {
-        this.challengeRepository = challengeRepository;
+    public ModalListener(ChallengeState challengeState) {
+        this.challengeState = challengeState;
     }
 
     @Override
@@ -69,9 +68,11 @@ public class ModalListener extends ListenerAdapter {
             challenge.setStartDate(new Date().getTime());
             challenge.setEndDate(whenEnd);
             challenge.setReward(reward);
-            challenge.setStatus(ChallengeStatus.ACTIVE);
 
-            challengeRepository.insert(challenge);
+            if (!challengeState.create(challenge)) {
+                event.reply("There is already an ongoing challenge. Please wait until the current challenge is over.").setEphemeral(true).queue();
+                return;
+            }
 
             //Make the announcement
             //803777799353270293 <- challenges channel
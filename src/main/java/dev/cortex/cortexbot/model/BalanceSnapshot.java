@@ -0,0 +1,38 @@
+package dev.cortex.cortexbot.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * A member's points as of a snapshot run, the starting point for replaying the ledger
+ */
+@Document(collection = "balance_snapshot")
+@CompoundIndex(name = "userID_takenAt", def = "{'userID': 1, 'takenAt': -1}")
+@Data
+@NoArgsConstructor
+public class BalanceSnapshot {
+
+    @Id
+    private String id;
+
+    private String userID;
+    private long points;
+
+    /**
+     * The member's pointsVersion when their points were read, changes up to it are already in points
+     */
+    private long version;
+
+    /**
+     * When the run started, shared by every snapshot of the run
+     */
+    @Indexed
+    private Date takenAt;
+
+}
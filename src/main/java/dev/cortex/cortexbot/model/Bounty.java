@@ -2,6 +2,7 @@ package dev.cortex.cortexbot.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document
@@ -12,6 +13,7 @@ public class Bounty {
     private String id;
 
     private String userId;
+    @Indexed
     private String channelId;
     private boolean finished;
     private String staffId;
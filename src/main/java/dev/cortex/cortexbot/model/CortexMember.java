@@ -2,6 +2,7 @@ package dev.cortex.cortexbot.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 /**
@@ -9,6 +10,8 @@ import org.springframework.data.mongodb.core.mapping.Document;
  * , used to track score and such
  */
 @Document(collection = "member")
+//leaderboard order, _id breaks ties so pages can continue from the last member shown
+@CompoundIndex(name = "points_id", def = "{'points': -1, '_id': -1}")
 @Data
 public class CortexMember {
 
@@ -19,7 +22,7 @@ public class CortexMember {
     private String id;
 
     /**
-     * Their discord unique ID
+     * Their discord unique ID, unique index created by MemberIndexMigration
      */
     private String userID;
 
@@ -29,11 +32,28 @@ public class CortexMember {
      * Amount of points from talking, winning challenges, and such
      */
     private long points;
+    /**
+     * Bumped on every write to points, so listeners can tell an old balance from a newer one
+     */
+    private long pointsVersion;
     /**
      * The amount of messages sent by this user on discord
      */
     private long messagesSent;
 
+    /**
+     * Thanks counters, kept up to date by ThanksService whenever a Thanked is recorded
+     */
+    private long thanksReceived;
+    private long thanksGiven;
+    private long tipsReceived;
+    private long tipsGiven;
+
+    /**
+     * Whether they want their DMs as one digest an hour instead of one at a time
+     */
+    private boolean dmDigest;
+
     private int level;
 
     public void setPoints(long points) {
@@ -0,0 +1,35 @@
+package dev.cortex.cortexbot.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * What a member earned on one day (UTC), one document per member per day.
+ * Summing the buckets in a window gives the weekly and monthly leaderboards.
+ */
+@Document(collection = "daily_activity")
+//day first so a window is one index range, also makes the upsert key unique
+@CompoundIndex(name = "day_userID", def = "{'day': 1, 'userID': 1}", unique = true)
+@Data
+@NoArgsConstructor
+public class DailyActivity {
+
+    @Id
+    private String id;
+
+    private String userID;
+
+    /**
+     * Midnight UTC of the day this bucket covers
+     */
+    private Date day;
+
+    private long points;
+    private long messages;
+
+}
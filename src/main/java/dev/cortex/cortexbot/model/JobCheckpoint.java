@@ -0,0 +1,41 @@
+package dev.cortex.cortexbot.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * How far a long running job got, so it can pick up where it left off after a restart
+ */
+@Document(collection = "job_checkpoint")
+@Data
+@NoArgsConstructor
+public class JobCheckpoint {
+
+    /**
+     * Name of the job, unique per thing it works through
+     */
+    @Id
+    private String id;
+
+    /**
+     * The last Discord message the job finished with
+     */
+    private String lastMessageID;
+
+    private long processed;
+    private boolean done;
+    private Date startedAt;
+    private Date updatedAt;
+
+    /**
+     * Tallies the job has built up so far, saved with the position so a resumed job does not count anything twice
+     */
+    private Map<String, Long> counts = new HashMap<>();
+
+}
@@ -0,0 +1,45 @@
+package dev.cortex.cortexbot.model;
+
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * One change to a member's points. Entries are only ever inserted, replaying the deltas
+ * after a balance snapshot gives the balance at any later point in time.
+ */
+@Document(collection = "ledger")
+@CompoundIndex(name = "target_timestamp", def = "{'target': 1, 'timestamp': -1, '_id': -1}")
+@Data
+@NoArgsConstructor
+public class LedgerEntry {
+
+    @Id
+    private String id;
+
+    /**
+     * The member whose points changed
+     */
+    private String target;
+
+    /**
+     * Who made the change, null when the bot did
+     */
+    private String actor;
+
+    private PointsChangedEvent.Action action;
+    private long delta;
+    private String reason;
+    private Date timestamp;
+
+    /**
+     * The member's pointsVersion after the change, 0 when only the delta was known
+     */
+    private long version;
+
+}
@@ -0,0 +1,24 @@
+package dev.cortex.cortexbot.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Notifications waiting for a member's hourly digest, only stored while the bot restarts
+ */
+@Document(collection = "pending_digest")
+@Data
+@NoArgsConstructor
+public class PendingDigest {
+
+    @Id
+    private String userID;
+
+    private List<String> messages = new ArrayList<>();
+
+}
@@ -0,0 +1,41 @@
+package dev.cortex.cortexbot.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * A suggestion posted in the suggestions channel, with its vote tallies kept up to date from reactions
+ */
+@Document(collection = "suggestion")
+//top suggestions, _id breaks ties the same way every time
+@CompoundIndex(name = "score_id", def = "{'score': -1, '_id': -1}")
+@Data
+@NoArgsConstructor
+public class Suggestion {
+
+    /**
+     * ID of the bot's repost of the suggestion, the message people vote on
+     */
+    @Id
+    private String id;
+
+    private String authorID;
+    private String authorName;
+    private String content;
+    private String jumpUrl;
+    private Date createdAt;
+
+    private long upvotes;
+    private long downvotes;
+
+    /**
+     * Upvotes minus downvotes
+     */
+    private long score;
+
+}
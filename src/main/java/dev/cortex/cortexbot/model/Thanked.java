@@ -3,9 +3,16 @@ package dev.cortex.cortexbot.model;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
+@Document
+//the latest thank between two members is a single index seek, used by the thank cooldown
+@CompoundIndex(name = "personThanked_thankBy_when", def = "{'personThanked': 1, 'thankBy': 1, 'when': -1}")
+//top helpers over a period, covers the fields the aggregation groups on
+@CompoundIndex(name = "when_personThanked_points", def = "{'when': -1, 'personThanked': 1, 'points': 1}")
 @Data
 @NoArgsConstructor
 public class Thanked {
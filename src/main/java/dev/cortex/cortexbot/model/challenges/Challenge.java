@@ -2,6 +2,7 @@ package dev.cortex.cortexbot.model.challenges;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -9,6 +10,8 @@ import java.util.List;
 
 @Data
 @Document
+//current challenge lookups by status, oldest first
+@CompoundIndex(name = "status_startDate", def = "{'status': 1, 'startDate': 1}")
 public class Challenge {
 
     @Id
@@ -6,6 +6,7 @@ import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
 @Document
+//one submission per member per challenge, also what rejects double clicks. Unique index created by SubmissionIndexMigration
 public class Submission {
 
     @Id
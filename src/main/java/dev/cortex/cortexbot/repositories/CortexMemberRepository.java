@@ -2,7 +2,9 @@ package dev.cortex.cortexbot.repositories;
 
 import dev.cortex.cortexbot.model.CortexMember;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,5 +20,9 @@ public interface CortexMemberRepository extends MongoRepository<CortexMember, St
 
     CortexMember findByUserIDIs(String userID);
 
+    //members with the most points first, only userID and points are loaded
+    @Query(value = "{}", fields = "{ 'userID' : 1, 'points' : 1 }", sort = "{ 'points' : -1, '_id' : -1 }")
+    List<CortexMember> findLeaderboard(Pageable pageable);
+
 }
 
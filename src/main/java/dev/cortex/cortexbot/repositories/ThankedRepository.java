@@ -18,4 +18,7 @@ public interface ThankedRepository extends MongoRepository<Thanked, String> {
     //get the thanks a user have given to another specific user
     List<Thanked> findAllByPersonThankedEqualsAndThankByEquals(String personThanked, String thankedBy);
 
+    //get the most recent thank a user has given to another specific user
+    Thanked findFirstByPersonThankedAndThankByOrderByWhenDesc(String personThanked, String thankedBy);
+
 }
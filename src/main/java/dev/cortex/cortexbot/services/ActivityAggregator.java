@@ -0,0 +1,228 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import dev.cortex.cortexbot.model.CortexMember;
+import com.mongodb.bulk.BulkWriteError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Collects per-member message activity in memory and writes it behind to the
+ * member collection as a single bulk upsert, instead of a read and a save per message.
+ */
+@Service
+public class ActivityAggregator {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DailyActivityService dailyActivityService;
+    private final int maxEvents;
+
+    private final ConcurrentHashMap<String, PendingActivity> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "activity-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DistributionSummary batchSize;
+    private final Counter eventsRecorded;
+    private final Counter writesSaved;
+
+    public ActivityAggregator(MongoTemplate mongoTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              DailyActivityService dailyActivityService,
+                              MeterRegistry meterRegistry,
+                              @Value("${cortex.activity.flush-interval-seconds:10}") long flushIntervalSeconds,
+                              @Value("${cortex.activity.flush-max-events:500}") int maxEvents) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.dailyActivityService = dailyActivityService;
+        this.maxEvents = maxEvents;
+
+        this.batchSize = DistributionSummary.builder("cortex.activity.batch.size")
+                .description("Member documents written per activity flush")
+                .register(meterRegistry);
+        this.eventsRecorded = Counter.builder("cortex.activity.events")
+                .description("Message events recorded by the activity aggregator")
+                .register(meterRegistry);
+        this.writesSaved = Counter.builder("cortex.activity.writes.saved")
+                .description("Database writes avoided by batching message activity")
+                .register(meterRegistry);
+
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Records a message sent by a member, along with any points it earned them.
+     */
+    public void recordMessage(String userID, String name, long points) {
+        pending.compute(userID, (id, activity) -> {
+            if (activity == null) {
+                activity = new PendingActivity();
+            }
+            activity.messages++;
+            activity.points += points;
+            activity.name = name;
+            return activity;
+        });
+        eventsRecorded.increment();
+
+        //flush early if enough events have piled up since the last write
+        if (pendingEvents.incrementAndGet() >= maxEvents && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Runs the task while no activity is being written, whatever was flushed before it has
+     * published its events and nothing else is written until it returns.
+     */
+    public synchronized <T> T whileIdle(Supplier<T> task) {
+        return task.get();
+    }
+
+    /**
+     * Writes everything collected so far as one unordered bulk write of upserts.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        //insertion order matches the order of the writes, bulk errors refer to them by index
+        Map<String, PendingActivity> batch = new LinkedHashMap<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CortexMember.class);
+        long events = 0;
+
+        for (String userID : pending.keySet()) {
+            PendingActivity activity = pending.remove(userID);
+            if (activity == null) {
+                continue;
+            }
+
+            batch.put(userID, activity);
+            events += activity.messages;
+
+            Update update = new Update()
+                    .inc("messagesSent", activity.messages)
+                    .inc("points", activity.points)
+                    .inc("pointsVersion", 1)
+                    .set("name", activity.name);
+            bulk.upsert(Query.query(Criteria.where("userID").is(userID)), update);
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        pendingEvents.addAndGet((int) -events);
+
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            //unordered, so only the failed writes are missing, e.g. two upserts racing to create the same
+            //member where the unique userID index turned one away. Those are retried on the next flush
+            List<String> order = new ArrayList<>(batch.keySet());
+            for (BulkWriteError error : e.getErrors()) {
+                String userID = order.get(error.getIndex());
+                PendingActivity activity = batch.remove(userID);
+                pending.merge(userID, activity, PendingActivity::absorb);
+                pendingEvents.addAndGet((int) activity.messages);
+                events -= activity.messages;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            //put the activity back so it is retried on the next flush
+            batch.forEach((userID, activity) -> pending.merge(userID, activity, PendingActivity::absorb));
+            pendingEvents.addAndGet((int) events);
+            throw e;
+        }
+
+        batchSize.record(batch.size());
+        writesSaved.increment(events - 1);
+
+        //the member totals are already written, so a failed bucket write is logged rather than retried to avoid counting twice
+        Map<String, DailyActivityService.Activity> buckets = new HashMap<>();
+        batch.forEach((userID, activity) -> buckets.put(userID, new DailyActivityService.Activity(activity.messages, activity.points)));
+        try {
+            dailyActivityService.recordActivity(buckets);
+        } catch (RuntimeException e) {
+            System.out.println("Failed to write daily activity buckets for " + buckets.size() + " members");
+            e.printStackTrace();
+        }
+
+        List<PointsChangedEvent.Change> changes = new ArrayList<>();
+        batch.forEach((userID, activity) -> {
+            if (activity.points != 0) {
+                changes.add(new PointsChangedEvent.Change(userID, activity.points, null, 0));
+            }
+        });
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new PointsChangedEvent(PointsChangedEvent.Cause.of(PointsChangedEvent.Action.MESSAGE, null), changes));
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to flush member activity, will retry");
+            e.printStackTrace();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    private static class PendingActivity {
+
+        private long messages;
+        private long points;
+        private String name;
+
+        private PendingActivity absorb(PendingActivity older) {
+            messages += older.messages;
+            points += older.points;
+            if (name == null) {
+                name = older.name;
+            }
+            return this;
+        }
+
+    }
+
+}
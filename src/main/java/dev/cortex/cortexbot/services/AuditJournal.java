@@ -0,0 +1,364 @@
+package dev.cortex.cortexbot.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local append-only record of everything the bot audits, one JSON object per line in a file per
+ * UTC day. A single writer thread appends whatever has queued up and syncs it to disk once per batch.
+ * Files older than a few days are gzipped, recent ones are searched through a memory map.
+ */
+@Service
+public class AuditJournal {
+
+    public record Entry(long timestamp,
+                        String type,
+                        @Nullable String target,
+                        @Nullable String actor,
+                        @Nullable Long amount,
+                        @Nullable String reason,
+                        @Nullable String text) {
+
+        public boolean involves(String userID) {
+            return userID.equals(target) || userID.equals(actor) || text != null && text.contains(userID);
+        }
+    }
+
+    private static final String PREFIX = "audit-";
+    private static final String PLAIN = ".ndjson";
+    private static final String COMPRESSED = ".ndjson.gz";
+    private static final int WRITE_ATTEMPTS = 3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final Path directory;
+    private final int compressAfterDays;
+    private final boolean fsync;
+
+    private final BlockingQueue<ByteBuffer> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private FileChannel channel;
+    private LocalDate channelDay;
+
+    private final Counter dropped;
+    private final DistributionSummary batchSize;
+
+    public AuditJournal(MeterRegistry meterRegistry,
+                        @Value("${cortex.audit.dir:audit}") String directory,
+                        @Value("${cortex.audit.compress-after-days:7}") int compressAfterDays,
+                        @Value("${cortex.audit.fsync:true}") boolean fsync,
+                        @Value("${cortex.audit.queue-capacity:10000}") int capacity) {
+        this.directory = Path.of(directory);
+        this.compressAfterDays = compressAfterDays;
+        this.fsync = fsync;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+
+        this.dropped = Counter.builder("cortex.audit.dropped")
+                .description("Audit entries dropped because the journal queue was full or they could not be written")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("cortex.audit.batch.size")
+                .description("Audit entries written per fsync")
+                .register(meterRegistry);
+
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the audit journal directory " + directory, e);
+        }
+
+        this.writer = new Thread(this::write, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void append(Entry entry) {
+        byte[] line;
+        try {
+            line = (MAPPER.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        //never hold up the caller, a full queue means the disk can not keep up
+        if (!queue.offer(ByteBuffer.wrap(line))) {
+            dropped.increment();
+        }
+    }
+
+    private void write() {
+        List<ByteBuffer> batch = new ArrayList<>();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                ByteBuffer first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                //group commit, everything that queued up while the last fsync ran goes out together
+                batch.add(first);
+                queue.drainTo(batch);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                System.out.println("Failed to write " + batch.size() + " audit entries");
+                e.printStackTrace();
+            } finally {
+                batch.clear();
+            }
+        }
+
+        closeChannel();
+    }
+
+    /**
+     * Writes and syncs the batch, reopening the file and trying again if that fails, since a
+     * channel that threw once may stay broken. Gives up on the batch after a few attempts.
+     */
+    private void writeBatch(List<ByteBuffer> batch) throws InterruptedException {
+        ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                //buffer positions carry over, so a retry continues after the bytes that were already written
+                FileChannel channel = channelFor(LocalDate.now(ZoneOffset.UTC));
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+                batchSize.record(batch.size());
+                return;
+            } catch (IOException e) {
+                closeChannel();
+
+                if (attempt >= WRITE_ATTEMPTS) {
+                    System.out.println("Failed to write " + batch.size() + " audit entries after " + attempt + " attempts");
+                    e.printStackTrace();
+                    dropped.increment(batch.size());
+                    return;
+                }
+                Thread.sleep(attempt * 1_000L);
+            }
+        }
+    }
+
+    private FileChannel channelFor(LocalDate day) throws IOException {
+        if (channel == null || !day.equals(channelDay)) {
+            closeChannel();
+            channel = FileChannel.open(file(day, PLAIN), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            channelDay = day;
+
+            //the day rolled over, this is a good time to compress the old ones
+            compressOldFiles(day);
+        }
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        //closed even when the sync fails, a broken channel is never reused
+        try (FileChannel closing = channel) {
+            closing.force(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    private void compressOldFiles(LocalDate today) {
+        LocalDate cutoff = today.minusDays(compressAfterDays);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path plain : files.filter(file -> file.getFileName().toString().endsWith(PLAIN)).toList()) {
+                LocalDate day = dayOf(plain);
+                if (day == null || !day.isBefore(cutoff)) {
+                    continue;
+                }
+
+                Path compressed = file(day, COMPRESSED);
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                    Files.copy(plain, out);
+                }
+                Files.delete(plain);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to compress old audit journal files");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finds the newest entries in the time range, optionally only those involving a member.
+     * Reads the day files in the range, newest first, and stops once it has enough.
+     */
+    public List<Entry> query(@Nullable String userID, Instant from, Instant to, int limit) {
+        List<Entry> found = new ArrayList<>();
+
+        LocalDate first = LocalDate.ofInstant(from, ZoneOffset.UTC);
+        for (LocalDate day = LocalDate.ofInstant(to, ZoneOffset.UTC); !day.isBefore(first) && found.size() < limit; day = day.minusDays(1)) {
+
+            //keep only the last matches of the day, the file is oldest first
+            int wanted = limit - found.size();
+            Deque<Entry> matches = new ArrayDeque<>();
+            forEachLine(day, userID, line -> {
+                Entry entry = parse(line);
+                if (entry == null || entry.timestamp() < from.toEpochMilli() || entry.timestamp() > to.toEpochMilli()
+                        || userID != null && !entry.involves(userID)) {
+                    return;
+                }
+
+                matches.addLast(entry);
+                if (matches.size() > wanted) {
+                    matches.removeFirst();
+                }
+            });
+
+            while (!matches.isEmpty()) {
+                found.add(matches.removeLast());
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Hands each line of a day file to the action, one at a time. With a filter, only lines containing it are decoded.
+     */
+    private void forEachLine(LocalDate day, @Nullable String filter, Consumer<String> action) {
+        Path plain = file(day, PLAIN);
+        Path compressed = file(day, COMPRESSED);
+
+        try {
+            if (Files.exists(plain)) {
+                forEachMappedLine(plain, filter, action);
+            } else if (Files.exists(compressed)) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(compressed)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (filter == null || line.contains(filter)) {
+                            action.accept(line);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to read the audit journal for " + day);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Scans a day file through a read only memory map. Lines are matched against the filter as bytes
+     * and only the ones that match are copied out and decoded.
+     */
+    private void forEachMappedLine(Path file, @Nullable String filter, Consumer<String> action) throws IOException {
+        byte[] needle = filter == null ? null : filter.getBytes(StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int start = 0;
+            for (int i = 0; i < map.limit(); i++) {
+                if (map.get(i) != '\n') {
+                    continue;
+                }
+
+                if (needle == null || contains(map, start, i, needle)) {
+                    byte[] line = new byte[i - start];
+                    map.get(start, line);
+                    action.accept(new String(line, StandardCharsets.UTF_8));
+                }
+                start = i + 1;
+            }
+            //anything after the last newline is a line still being written, leave it
+        }
+    }
+
+    private static boolean contains(MappedByteBuffer map, int start, int end, byte[] needle) {
+        for (int i = start; i <= end - needle.length; i++) {
+            int matched = 0;
+            while (matched < needle.length && map.get(i + matched) == needle[matched]) {
+                matched++;
+            }
+            if (matched == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private Entry parse(String line) {
+        try {
+            return MAPPER.readValue(line, Entry.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private Path file(LocalDate day, String extension) {
+        return directory.resolve(PREFIX + day + extension);
+    }
+
+    @Nullable
+    private LocalDate dayOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return LocalDate.parse(name.substring(PREFIX.length(), name.indexOf('.')));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        //no interrupt, it would close the FileChannel mid write, the poll times out on its own
+        running = false;
+        writer.join(5_000);
+    }
+
+}
@@ -0,0 +1,118 @@
+package dev.cortex.cortexbot.services;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes messages in ephemeral channels after a per-channel retention time.
+ * Messages are queued with their expiry and purged in bulk by a scheduled job,
+ * so nothing ever waits on the gateway thread.
+ *
+ * Rules are configured as {@code cortex.autodelete.rules=<channel id>:<seconds>[:members],...},
+ * where {@code members} leaves messages sent by bots alone.
+ */
+@Service
+public class AutoDeleteService {
+
+    //Discord refuses bulk deletes of more than 100 messages
+    private static final int BULK_DELETE_LIMIT = 100;
+
+    private final Map<Long, Rule> rules = new HashMap<>();
+    private final ConcurrentHashMap<Long, ConcurrentLinkedQueue<PendingDelete>> queues = new ConcurrentHashMap<>();
+
+    public AutoDeleteService(@Value("${cortex.autodelete.rules:}") String rules) {
+        for (String rule : rules.split(",")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+
+            String[] parts = rule.trim().split(":");
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Invalid auto delete rule \"" + rule + "\", expected <channel id>:<seconds>[:members]");
+            }
+
+            boolean membersOnly = parts.length > 2 && parts[2].equalsIgnoreCase("members");
+            this.rules.put(Long.parseLong(parts[0]), new Rule(TimeUnit.SECONDS.toMillis(Long.parseLong(parts[1])), membersOnly));
+        }
+    }
+
+    /**
+     * Queues the message for deletion if its channel has a retention rule.
+     *
+     * @return true if the message will be deleted
+     */
+    public boolean schedule(Message message) {
+        Rule rule = rules.get(message.getChannel().getIdLong());
+
+        if (rule == null || (rule.membersOnly() && message.getAuthor().isBot())) {
+            return false;
+        }
+
+        queues.computeIfAbsent(message.getChannel().getIdLong(), id -> new ConcurrentLinkedQueue<>())
+                .add(new PendingDelete(message.getId(), System.currentTimeMillis() + rule.retentionMillis()));
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${cortex.autodelete.purge-interval-millis:1000}")
+    public void purge() {
+        JDA api = DiscordBot.getApi();
+        if (api == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        queues.forEach((channelId, queue) -> {
+            TextChannel channel = api.getTextChannelById(channelId);
+            if (channel == null) {
+                queues.remove(channelId);
+                return;
+            }
+
+            //the retention is the same for the whole channel, so expired messages are always at the head
+            List<String> batch = new ArrayList<>();
+            PendingDelete next;
+            while ((next = queue.peek()) != null && next.expiresAt() <= now) {
+                queue.poll();
+                batch.add(next.messageId());
+
+                if (batch.size() == BULK_DELETE_LIMIT) {
+                    delete(channel, batch);
+                    batch = new ArrayList<>();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                delete(channel, batch);
+            }
+        });
+    }
+
+    private void delete(TextChannel channel, List<String> messageIds) {
+        if (messageIds.size() == 1) {
+            channel.deleteMessageById(messageIds.get(0)).queue(null, failure -> {});
+        } else {
+            channel.deleteMessagesByIds(messageIds).queue(null, failure ->
+                    System.out.println("Failed to bulk delete " + messageIds.size() + " messages in #" + channel.getName() + ": " + failure.getMessage()));
+        }
+    }
+
+    private record Rule(long retentionMillis, boolean membersOnly) {
+    }
+
+    private record PendingDelete(String messageId, long expiresAt) {
+    }
+
+}
@@ -0,0 +1,138 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.Bounty;
+import dev.cortex.cortexbot.repositories.BountyRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the channel IDs of unfinished bounties in memory so the message listener
+ * can tell whether a channel is a bounty channel without going to the database.
+ * Any change to a bounty should go through here so the index stays in sync.
+ */
+@Service
+public class BountyService {
+
+    private final BountyRepository bountyRepository;
+    private final MongoTemplate mongoTemplate;
+
+    private final Set<String> activeChannels = ConcurrentHashMap.newKeySet();
+
+    //latest activity per bounty channel that has not been written yet
+    private final ConcurrentHashMap<String, Long> pendingActivity = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BountyService(BountyRepository bountyRepository, MongoTemplate mongoTemplate) {
+        this.bountyRepository = bountyRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void loadActiveBounties() {
+        activeChannels.clear();
+        bountyRepository.findAllByFinishedEquals(false)
+                .forEach(bounty -> activeChannels.add(bounty.getChannelId()));
+    }
+
+    public boolean isActiveBountyChannel(String channelId) {
+        return activeChannels.contains(channelId);
+    }
+
+    public Bounty save(Bounty bounty) {
+        Bounty saved = bountyRepository.save(bounty);
+
+        if (saved.isFinished()) {
+            activeChannels.remove(saved.getChannelId());
+            pendingActivity.remove(saved.getChannelId());
+        } else {
+            activeChannels.add(saved.getChannelId());
+        }
+
+        return saved;
+    }
+
+    public void finish(String channelId) {
+        mongoTemplate.updateMulti(Query.query(Criteria.where("channelId").is(channelId)), Update.update("finished", true), Bounty.class);
+        activeChannels.remove(channelId);
+        pendingActivity.remove(channelId);
+    }
+
+    public void delete(String channelId) {
+        bountyRepository.deleteBountyByChannelIdEquals(channelId);
+        activeChannels.remove(channelId);
+        pendingActivity.remove(channelId);
+    }
+
+    /**
+     * Marks a bounty channel as active now. The time is only written out by
+     * {@link #flushActivity()}, so a busy channel costs at most one write per interval.
+     */
+    public void recordActivity(String channelId) {
+        if (activeChannels.contains(channelId)) {
+            pendingActivity.put(channelId, System.currentTimeMillis());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cortex.bounty.activity-write-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public synchronized void flushActivity() {
+
+        if (pendingActivity.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> batch = new HashMap<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bounty.class);
+
+        for (String channelId : pendingActivity.keySet()) {
+            Long whenLastActive = pendingActivity.remove(channelId);
+            if (whenLastActive == null || !activeChannels.contains(channelId)) {
+                continue;
+            }
+
+            batch.put(channelId, whenLastActive);
+            bulk.updateOne(Query.query(Criteria.where("channelId").is(channelId).and("finished").is(false)),
+                    Update.update("whenLastActive", whenLastActive));
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            bulk.execute();
+        } catch (RuntimeException e) {
+            //put them back for the next flush, unless the channel has seen newer activity since
+            batch.forEach((channelId, whenLastActive) -> {
+                if (activeChannels.contains(channelId)) {
+                    pendingActivity.merge(channelId, whenLastActive, Math::max);
+                }
+            });
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flushActivity();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to write bounty activity on shutdown");
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -4,8 +4,9 @@ import dev.cortex.cortexbot.repositories.ChallengeRepository;
 import dev.cortex.cortexbot.repositories.SubmissionRepository;
 import dev.cortex.cortexbot.model.challenges.Challenge;
 import dev.cortex.cortexbot.model.challenges.ChallengeGrade;
-import dev.cortex.cortexbot.model.challenges.ChallengeStatus;
 import dev.cortex.cortexbot.model.challenges.Submission;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import net.dv8tion.jda.api.Permission;
 import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
@@ -14,11 +15,14 @@ import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.interactions.components.buttons.Button;
 import net.dv8tion.jda.api.interactions.components.buttons.ButtonInteraction;
 import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 @Service
 public class ChallengeService {
@@ -26,44 +30,36 @@ public class ChallengeService {
     private final ChallengeRepository challengeRepository;
     private final SubmissionRepository submissionRepository;
     private final LoggingService loggingService;
+    private final RestActionScheduler restActionScheduler;
+    private final ChallengeState challengeState;
+    private final SubmissionChannelPool submissionChannelPool;
+    private final Timer channelReady;
 
     @Autowired
-    public ChallengeService(ChallengeRepository challengeRepository, SubmissionRepository submissionRepository, LoggingService loggingService) {
+    public ChallengeService(ChallengeRepository challengeRepository, SubmissionRepository submissionRepository, LoggingService loggingService, RestActionScheduler restActionScheduler, ChallengeState challengeState, SubmissionChannelPool submissionChannelPool, MeterRegistry meterRegistry) {
         this.challengeRepository = challengeRepository;
+        this.challengeState = challengeState;
+        this.submissionChannelPool = submissionChannelPool;
+        this.channelReady = Timer.builder("cortex.challenges.submission.ready")
+                .description("Time from clicking Submit Solution to the submission channel being ready")
+                .register(meterRegistry);
         this.submissionRepository = submissionRepository;
         this.loggingService = loggingService;
+        this.restActionScheduler = restActionScheduler;
     }
 
     //If there is an ongoing challenge, return true
     public boolean isChallengeOngoing() {
-
-        for (Challenge challenge : challengeRepository.findAll()) {
-            if(challenge.isActive()){
-                return true;
-            }
-        }
-        return false;
+        return challengeState.getActive() != null;
     }
 
     //If there is an active challenge, return it
     public Challenge getCurrentChallenge(){
-
-        for (Challenge challenge : challengeRepository.findAll()) {
-            if(challenge.isActive()){
-                return challenge;
-            }
-        }
-        return null;
+        return challengeState.getActive();
     }
 
     public Challenge getCurrentUngradedChallenge(){
-
-        for (Challenge challenge : challengeRepository.findAll()) {
-            if(challenge.getStatus() == ChallengeStatus.NEEDS_GRADING){
-                return challenge;
-            }
-        }
-        return null;
+        return challengeState.getNeedsGrading();
     }
 
     public void createSubmissionChannel(ButtonInteraction interaction){
@@ -80,34 +76,82 @@ public class ChallengeService {
         Guild guild = interaction.getGuild();
         Member member = interaction.getMember();
 
-        //See if the user already has a submission channel
-        if(submissionRepository.existsSubmissionByUseridEqualsAndChallengeIdEquals(member.getId(), challenge.getId())){
-            interaction.getHook().sendMessage("You already have a submission channel for this challenge.").setEphemeral(true).queue();
-            return;
-        }
-
-        TextChannel channel = guild.createTextChannel(member.getEffectiveName())
-                .setParent(guild.getCategoryById("803777453914456104")).complete();
-
         Role role = guild.getRoleById("786974475354505248");
         if (role == null){
             //send a message in the bounty saying that something went wrong
-            interaction.getChannel().asTextChannel().sendMessage("An error occurred. Please try again later.").queue();
+            interaction.getHook().sendMessage("An error occurred. Please try again later.").setEphemeral(true).queue();
             return;
         }
-        channel.getManager().putRolePermissionOverride(guild.getPublicRole().getIdLong(), null, List.of(Permission.VIEW_CHANNEL)).queueAfter(3, TimeUnit.SECONDS, unused -> {
-            channel.getManager().putRolePermissionOverride(role.getIdLong(), List.of(Permission.VIEW_CHANNEL), null).queueAfter(3, TimeUnit.SECONDS, unused1 -> {
-                channel.getManager().putMemberPermissionOverride(member.getIdLong(), List.of(Permission.VIEW_CHANNEL), null).queue();
-            });
-        });
 
         Submission sm = new Submission();
-        sm.setChannel(channel.getId());
         sm.setDate(System.currentTimeMillis());
         sm.setChallengeId(challenge.getId());
         sm.setUserid(member.getId());
         sm.setStatus(ChallengeGrade.UNGRADED);
 
+        //the unique index turns away double clicks before anything is created on Discord
+        try {
+            submissionRepository.insert(sm);
+        } catch (DuplicateKeyException e) {
+            interaction.getHook().sendMessage("You already have a submission channel for this challenge.").setEphemeral(true).queue();
+            return;
+        }
+
+        //a warm channel from the pool only needs renaming and the member let in, one request either way
+        TextChannel pooled = submissionChannelPool.take();
+        if (pooled != null) {
+            pooled.getManager()
+                    .setName(member.getEffectiveName())
+                    .putMemberPermissionOverride(member.getIdLong(), List.of(Permission.VIEW_CHANNEL), null)
+                    .queue(unused -> submissionChannelReady(interaction, member, sm, pooled),
+                            error -> {
+                                //the edit is one request, so the channel is still as the pool made it
+                                error.printStackTrace();
+                                submissionChannelPool.release(pooled);
+                                createNewSubmissionChannel(interaction, guild, member, role, sm);
+                            });
+            return;
+        }
+
+        createNewSubmissionChannel(interaction, guild, member, role, sm);
+    }
+
+    private void createNewSubmissionChannel(ButtonInteraction interaction, Guild guild, Member member, Role role, Submission sm){
+        //one request, the channel is never visible to everyone
+        guild.createTextChannel(member.getEffectiveName(), guild.getCategoryById("803777453914456104"))
+                .addRolePermissionOverride(guild.getPublicRole().getIdLong(), null, List.of(Permission.VIEW_CHANNEL))
+                .addRolePermissionOverride(role.getIdLong(), List.of(Permission.VIEW_CHANNEL), null)
+                .addMemberPermissionOverride(member.getIdLong(), List.of(Permission.VIEW_CHANNEL), null)
+                .queue(channel -> submissionChannelReady(interaction, member, sm, channel),
+                        error -> submissionChannelFailed(interaction, sm, error));
+    }
+
+    private void submissionChannelReady(ButtonInteraction interaction, Member member, Submission sm, TextChannel channel){
+        sm.setChannel(channel.getId());
+        submissionRepository.save(sm);
+
+        channel.sendMessage(submissionIntro(member)).queue();
+
+        interaction.getHook().sendMessage("A submission channel has been created for you in " + channel.getAsMention()).setEphemeral(true).queue();
+        channelReady.record(Duration.between(interaction.getTimeCreated().toInstant(), Instant.now()));
+
+        loggingService.log("Created submission channel for " + member.getEffectiveName());
+
+        //the challenge ended while the channel was being made, lockSubmissionChannels skipped it since it had no channel yet
+        Challenge active = challengeState.getActive();
+        if (active == null || !active.getId().equals(sm.getChallengeId())) {
+            lockSubmissionChannel(channel.getGuild(), channel);
+        }
+    }
+
+    private void submissionChannelFailed(ButtonInteraction interaction, Submission sm, Throwable error){
+        //let them try again
+        submissionRepository.delete(sm);
+        error.printStackTrace();
+        interaction.getHook().sendMessage("An error occurred. Please try again later.").setEphemeral(true).queue();
+    }
+
+    private MessageCreateData submissionIntro(Member member){
         MessageCreateBuilder messageBuilder = new MessageCreateBuilder();
         messageBuilder.addContent("---------------------------------------------------------------------------------------------").addContent("\n");
         messageBuilder.addContent(member.getEffectiveName() + "'s Challenge Submission Channel").addContent("\n\n");
@@ -115,14 +159,7 @@ public class ChallengeService {
         messageBuilder.addContent("\nThis channel will automatically lock when the challenge ends.").addContent("\n");
         messageBuilder.setActionRow(Button.danger("challenge-close-submission", "Delete Channel"));
         messageBuilder.addContent("---------------------------------------------------------------------------------------------");
-
-        channel.sendMessage(messageBuilder.build()).complete();
-
-        interaction.getHook().sendMessage("A submission channel has been created for you in #" + member.getEffectiveName()).setEphemeral(true).queue();
-
-        loggingService.log("Created submission channel for " + member.getEffectiveName());
-
-        submissionRepository.insert(sm);
+        return messageBuilder.build();
     }
 
     public void closeSubmissionChannel(ButtonInteraction interaction){
@@ -149,21 +186,32 @@ public class ChallengeService {
         //close all submission channels
         for(Submission submission : submissions){
 
-            Member member = guild.getMemberById(submission.getUserid());
+            //the channel is still being created
+            if(submission.getChannel() == null){
+                continue;
+            }
+
             TextChannel channel = guild.getTextChannelById(submission.getChannel());
+            lockSubmissionChannel(guild, channel);
+        }
 
-            //make it so that only staff can see the channel
-            Role role = guild.getRoleById("786974475354505248");
-            channel.getManager().putRolePermissionOverride(guild.getPublicRole().getIdLong(), null, List.of(Permission.VIEW_CHANNEL)).queue();
-            channel.getManager().putRolePermissionOverride(role.getIdLong(), List.of(Permission.VIEW_CHANNEL), null).queue();
+    }
 
-            MessageCreateBuilder messageBuilder = new MessageCreateBuilder();
-            messageBuilder.setContent("Your submission has been closed and will be looked at, look out for an announcement on the results. Thank you for participating!");
-            messageBuilder.setActionRow(Button.success("challenge-grade-pass", "Passed"), Button.danger("challenge-grade-fail", "Failed"));
+    private void lockSubmissionChannel(Guild guild, TextChannel channel){
 
-            //tell the member that their submission has been closed and will be looked at
-            channel.sendMessage(messageBuilder.build()).queue();
-        }
+        //make it so that only staff can see the channel
+        Role role = guild.getRoleById("786974475354505248");
+        restActionScheduler.submit(RestActionScheduler.Priority.MODERATION, "override:" + channel.getId() + ":" + guild.getPublicRole().getId(),
+                channel.getManager().putRolePermissionOverride(guild.getPublicRole().getIdLong(), null, List.of(Permission.VIEW_CHANNEL)));
+        restActionScheduler.submit(RestActionScheduler.Priority.MODERATION, "override:" + channel.getId() + ":" + role.getId(),
+                channel.getManager().putRolePermissionOverride(role.getIdLong(), List.of(Permission.VIEW_CHANNEL), null));
+
+        MessageCreateBuilder messageBuilder = new MessageCreateBuilder();
+        messageBuilder.setContent("Your submission has been closed and will be looked at, look out for an announcement on the results. Thank you for participating!");
+        messageBuilder.setActionRow(Button.success("challenge-grade-pass", "Passed"), Button.danger("challenge-grade-fail", "Failed"));
+
+        //tell the member that their submission has been closed and will be looked at
+        restActionScheduler.submit(RestActionScheduler.Priority.MODERATION, channel.sendMessage(messageBuilder.build()));
 
     }
 
@@ -207,11 +255,9 @@ public class ChallengeService {
 
     }
 
+    //Announce the final results of a challenge that has been marked as graded
     public void finishChallenge(Challenge challenge, Guild guild){
 
-        //Finalize the state of the challenge and announce the final results
-        challenge.setStatus(ChallengeStatus.GRADED);
-
         List<Submission> submissions = submissionRepository.findAllByChallengeIdEquals(challenge.getId());
 
         submissions.forEach(submission -> {
@@ -223,7 +269,8 @@ public class ChallengeService {
             Member member = guild.getMemberById(submission.getUserid());
 
             //Give the user access to the channel
-            channel.getManager().putMemberPermissionOverride(member.getIdLong(), List.of(Permission.VIEW_CHANNEL), null).queue();
+            restActionScheduler.submit(RestActionScheduler.Priority.MODERATION, "override:" + channel.getId() + ":" + member.getId(),
+                    channel.getManager().putMemberPermissionOverride(member.getIdLong(), List.of(Permission.VIEW_CHANNEL), null));
 
             MessageCreateBuilder messageBuilder = new MessageCreateBuilder();
             if(submission.getStatus() == ChallengeGrade.PASS){
@@ -239,10 +286,10 @@ public class ChallengeService {
             }
 
             //Send the message to the channel
-            channel.sendMessage(messageBuilder.build()).queue();
+            restActionScheduler.submit(RestActionScheduler.Priority.MODERATION, channel.sendMessage(messageBuilder.build()));
 
             //Tell them they can view the channel for 24 hours and then it will be deleted
-            channel.sendMessage("...You can view this channel for *24 hours*, it will be deleted after...").queue();
+            restActionScheduler.submit(RestActionScheduler.Priority.MODERATION, channel.sendMessage("...You can view this channel for *24 hours*, it will be deleted after..."));
 
             //channel.delete().queueAfter(24, TimeUnit.HOURS);
         });
@@ -266,8 +313,6 @@ public class ChallengeService {
                 "Participants: " + participants + "\n" +
                 "Winners: " + winners + "\n");
         guild.getTextChannelById("803777799353270293").sendMessage(messageBuilder.build()).queue();
-
-        challengeRepository.save(challenge);
     }
 
 }
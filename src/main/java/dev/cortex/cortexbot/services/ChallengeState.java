@@ -0,0 +1,105 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.challenges.Challenge;
+import dev.cortex.cortexbot.model.challenges.ChallengeStatus;
+import jakarta.annotation.PostConstruct;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the active challenge and the one waiting to be graded, so button clicks don't have to look
+ * through every challenge ever made. Challenges only move ACTIVE -> NEEDS_GRADING -> GRADED, each step
+ * is a compare-and-set on the status, so two admins ending the same challenge can't both win.
+ * The cache is only reloaded when one of those steps goes through.
+ */
+@Service
+public class ChallengeState {
+
+    private final MongoTemplate mongoTemplate;
+
+    private volatile Challenge active;
+    private volatile Challenge needsGrading;
+
+    public ChallengeState(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public synchronized void reload() {
+        active = findOldest(ChallengeStatus.ACTIVE);
+        needsGrading = findOldest(ChallengeStatus.NEEDS_GRADING);
+    }
+
+    @Nullable
+    public Challenge getActive() {
+        return active;
+    }
+
+    @Nullable
+    public Challenge getNeedsGrading() {
+        return needsGrading;
+    }
+
+    /**
+     * Saves a new active challenge.
+     *
+     * @return false if there already is an active challenge
+     */
+    public synchronized boolean create(Challenge challenge) {
+        //the modal can be open for a while, someone else may have made one in the meantime
+        if (active != null) {
+            return false;
+        }
+
+        challenge.setStatus(ChallengeStatus.ACTIVE);
+        mongoTemplate.insert(challenge);
+        reload();
+        return true;
+    }
+
+    /**
+     * Ends the active challenge and closes it for submissions.
+     *
+     * @return the ended challenge, or null if there was none or someone else ended it first
+     */
+    @Nullable
+    public Challenge end(Challenge challenge) {
+        return transition(challenge, ChallengeStatus.ACTIVE, ChallengeStatus.NEEDS_GRADING,
+                Update.update("endDate", System.currentTimeMillis()));
+    }
+
+    /**
+     * Marks a challenge as graded once the results are in.
+     *
+     * @return the graded challenge, or null if it was not waiting to be graded
+     */
+    @Nullable
+    public Challenge finish(Challenge challenge) {
+        return transition(challenge, ChallengeStatus.NEEDS_GRADING, ChallengeStatus.GRADED, new Update());
+    }
+
+    @Nullable
+    private synchronized Challenge transition(Challenge challenge, ChallengeStatus from, ChallengeStatus to, Update update) {
+        //only matches if nobody moved it on since we read it
+        Query query = Query.query(Criteria.where("_id").is(challenge.getId()).and("status").is(from));
+        Challenge updated = mongoTemplate.findAndModify(query, update.set("status", to), FindAndModifyOptions.options().returnNew(true), Challenge.class);
+
+        if (updated != null) {
+            reload();
+        }
+        return updated;
+    }
+
+    @Nullable
+    private Challenge findOldest(ChallengeStatus status) {
+        Query query = Query.query(Criteria.where("status").is(status)).with(Sort.by(Sort.Direction.ASC, "startDate"));
+        return mongoTemplate.findOne(query, Challenge.class);
+    }
+
+}
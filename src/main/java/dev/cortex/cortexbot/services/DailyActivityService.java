@@ -0,0 +1,140 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import dev.cortex.cortexbot.model.DailyActivity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps per-member daily buckets of points earned and messages sent, and serves the
+ * weekly and monthly leaderboards from them.
+ */
+@Service
+public class DailyActivityService {
+
+    public enum Window {
+        WEEK(7, "this week"),
+        MONTH(30, "this month");
+
+        private final int days;
+        private final String label;
+
+        Window(int days, String label) {
+            this.days = days;
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public record Entry(String userID, long points, long messages) {}
+
+    public record Activity(long messages, long points) {}
+
+    //moving points around or setting them is not earning them, message points come through recordActivity
+    //THANK is only ever the tip moved from the thanker, so it is a transfer like PAY
+    private static final Set<PointsChangedEvent.Action> NOT_EARNED = Set.of(
+            PointsChangedEvent.Action.PAY,
+            PointsChangedEvent.Action.THANK,
+            PointsChangedEvent.Action.SET,
+            PointsChangedEvent.Action.MESSAGE,
+            PointsChangedEvent.Action.ECONOMY);
+
+    private final MongoTemplate mongoTemplate;
+    private final long cacheMillis;
+    private final Map<Window, CachedBoard> boards = new ConcurrentHashMap<>();
+
+    public DailyActivityService(MongoTemplate mongoTemplate,
+                                @Value("${cortex.activity.window-cache-seconds:60}") long cacheSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.cacheMillis = cacheSeconds * 1000;
+    }
+
+    /**
+     * Adds a batch of message activity to today's buckets with one bulk write, called by the activity aggregator.
+     */
+    public void recordActivity(Map<String, Activity> activity) {
+        if (activity.isEmpty()) {
+            return;
+        }
+
+        Date today = today();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailyActivity.class);
+        activity.forEach((userID, recorded) -> bulk.upsert(bucket(userID, today),
+                new Update().inc("messages", recorded.messages()).inc("points", recorded.points())));
+        bulk.execute();
+    }
+
+    @EventListener
+    public void onPointsChanged(PointsChangedEvent event) {
+        if (NOT_EARNED.contains(event.cause().action())) {
+            return;
+        }
+
+        Date today = today();
+        for (PointsChangedEvent.Change change : event.changes()) {
+            if (change.delta() > 0) {
+                mongoTemplate.upsert(bucket(change.userID(), today), new Update().inc("points", change.delta()), DailyActivity.class);
+            }
+        }
+    }
+
+    /**
+     * Gets the top earners over the last days of the window, including today. The result is
+     * cached for a short while since everyone asking for the weekly board sees the same one.
+     */
+    public List<Entry> getTop(Window window, int limit) {
+        long now = System.currentTimeMillis();
+
+        CachedBoard board = boards.get(window);
+        if (board == null || board.expiresAt < now || board.limit < limit) {
+            board = new CachedBoard(aggregate(window, limit), limit, now + cacheMillis);
+            boards.put(window, board);
+        }
+
+        return board.entries.subList(0, Math.min(limit, board.entries.size()));
+    }
+
+    private List<Entry> aggregate(Window window, int limit) {
+        Date from = Date.from(LocalDate.now(ZoneOffset.UTC).minusDays(window.days - 1).atStartOfDay(ZoneOffset.UTC).toInstant());
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("day").gte(from)),
+                Aggregation.group("userID").sum("points").as("points").sum("messages").as("messages"),
+                Aggregation.match(Criteria.where("points").gt(0)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "points").and(Sort.by(Sort.Direction.ASC, "_id"))),
+                Aggregation.limit(limit),
+                Aggregation.project("points", "messages").and("_id").as("userID"));
+
+        return mongoTemplate.aggregate(aggregation, DailyActivity.class, Entry.class).getMappedResults();
+    }
+
+    private Query bucket(String userID, Date day) {
+        return Query.query(Criteria.where("day").is(day).and("userID").is(userID));
+    }
+
+    private Date today() {
+        return Date.from(LocalDate.now(ZoneOffset.UTC).atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    private record CachedBoard(List<Entry> entries, int limit, long expiresAt) {}
+
+}
@@ -1,9 +1,13 @@
 package dev.cortex.cortexbot.services;
 
 import com.jagrosh.jdautilities.command.CommandClientBuilder;
+import dev.cortex.cortexbot.commands.AuditCommand;
+import dev.cortex.cortexbot.commands.CrawlCommand;
 import dev.cortex.cortexbot.commands.CodeBlockCommand;
 import dev.cortex.cortexbot.commands.JavaTutCommand;
 import dev.cortex.cortexbot.commands.LeaderboardCommand;
+import dev.cortex.cortexbot.commands.NotificationsCommand;
+import dev.cortex.cortexbot.commands.RankCommand;
 import dev.cortex.cortexbot.commands.SuggestionCommand;
 import dev.cortex.cortexbot.commands.challenges.ChallengeCommand;
 import dev.cortex.cortexbot.commands.jokes.JokeCommand;
@@ -13,44 +17,38 @@ import dev.cortex.cortexbot.commands.points.*;
 import dev.cortex.cortexbot.commands.points.menu.*;
 import dev.cortex.cortexbot.config.DiscordConfiguration;
 import dev.cortex.cortexbot.listeners.ButtonClickListener;
+import dev.cortex.cortexbot.listeners.EventDispatcher;
 import dev.cortex.cortexbot.listeners.InteractionListener;
 import dev.cortex.cortexbot.listeners.MessageListeners;
 import dev.cortex.cortexbot.listeners.ModalListener;
-import dev.cortex.cortexbot.model.CortexMember;
-import dev.cortex.cortexbot.repositories.ChallengeRepository;
-import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Activity;
 import net.dv8tion.jda.api.entities.Guild;
-import net.dv8tion.jda.api.entities.Role;
-import net.dv8tion.jda.api.exceptions.HierarchyException;
-import net.dv8tion.jda.api.exceptions.InsufficientPermissionException;
 import net.dv8tion.jda.api.exceptions.InvalidTokenException;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import net.dv8tion.jda.api.utils.cache.CacheFlag;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Service
 @Lazy(false)
 public class DiscordBot {
 
-    private final CortexMemberRepository cortexMemberRepository;
     private final DiscordConfiguration discordConfiguration;
     private final GivePointsCommand givePointsCommand;
     private final PointsCommand pointsCommand;
+    private final HistoryCommand historyCommand;
+    private final EconomyCommand economyCommand;
+    private final ThanksCommand thanksCommand;
+    private final AuditCommand auditCommand;
+    private final CrawlCommand crawlCommand;
+    private final NotificationsCommand notificationsCommand;
     private final PayCommand payCommand;
     private final MessageListeners messageListeners;
     private final ModalListener modalListener;
@@ -58,6 +56,7 @@ public class DiscordBot {
     private final JavaTutCommand javaTutCommand;
     private final CodeBlockCommand codeBlockCommand;
     private final LeaderboardCommand leaderboardCommand;
+    private final RankCommand rankCommand;
     private final TakePointsCommand takePointsCommand;
     private final SetPointsCommand setPointsCommand;
     private final ThankCommand thankCommand;
@@ -72,7 +71,7 @@ public class DiscordBot {
     private final TakePointsContextMenu takePointsContextMenu;
     private final ThankContextMenu thankContextMenu;
     private final InteractionListener interactionListener;
-    private final ChallengeRepository challengeRepository;
+    private final EventDispatcher eventDispatcher;
 
     private static JDA api;
 
@@ -87,15 +86,22 @@ public class DiscordBot {
                     .setActivity(Activity.listening("Pootin cant code"))
                     //Add commands
                     .addSlashCommand(leaderboardCommand)
+                    .addSlashCommand(rankCommand)
                     .addSlashCommand(suggestionCommand)
                     .addSlashCommand(codeBlockCommand)
                     .addSlashCommand(javaTutCommand)
                     .addSlashCommand(pointsCommand)
+                    .addSlashCommand(historyCommand)
                     .addSlashCommand(givePointsCommand)
                     .addSlashCommand(payCommand)
                     .addSlashCommand(takePointsCommand)
                     .addSlashCommand(setPointsCommand)
                     .addSlashCommand(thankCommand)
+                    .addSlashCommand(thanksCommand)
+                    .addSlashCommand(notificationsCommand)
+                    .addSlashCommand(auditCommand).forceGuildOnly("503656531665879063")
+                    .addSlashCommand(crawlCommand).forceGuildOnly("503656531665879063")
+                    .addSlashCommand(economyCommand).forceGuildOnly("503656531665879063")
                     .addSlashCommand(challengeCommand).forceGuildOnly("503656531665879063")
                     .addSlashCommand(jokeCommand).forceGuildOnly("503656531665879063")
                     .addContextMenu(helpingMessageContextMenu)
@@ -110,6 +116,8 @@ public class DiscordBot {
                     GatewayIntent.GUILD_MESSAGES, GatewayIntent.DIRECT_MESSAGES, GatewayIntent.GUILD_MESSAGE_REACTIONS))
                     .setToken(discordConfiguration.getBotToken())
                     .disableCache(CacheFlag.ACTIVITY, CacheFlag.VOICE_STATE, CacheFlag.CLIENT_STATUS)
+                    //handle events on our own bounded executors instead of the gateway thread
+                    .setEventManager(eventDispatcher)
                     .addEventListeners(commandClient.build())
                     .addEventListeners(messageListeners)
                     .addEventListeners(buttonClickListener)
@@ -135,77 +143,6 @@ public class DiscordBot {
         return getApi().getGuildById(discordConfiguration.getGuildId());
     }
 
-    public void addRoleToMember(net.dv8tion.jda.api.entities.Member member, long roleId) {
-        try {
-            Role role = member.getGuild().getRoleById(roleId);
-
-            if (role != null) {
-                member.getGuild().addRoleToMember(member, role).queueAfter(1, TimeUnit.MINUTES);
-            }
-        } catch (IllegalArgumentException | InsufficientPermissionException | HierarchyException e) {
-            System.out.println(member.getUser().getAsTag() + " did not get the role on join");
-            System.out.println(e);
-        }
-    }
-
-    /**
-     * Will give the Regular role to top 20 on the leaderboard every 1 hour
-     */
-    @Scheduled(cron = "0 0 * * * *")
-    public void applyRegularRoles() {
-
-        ArrayList<String> topTwenty = (ArrayList<String>) cortexMemberRepository.findAll()
-                .stream()
-                .sorted(Comparator.comparing(CortexMember::getPoints).reversed())
-                .limit(20)
-                .map(CortexMember::getUserID)
-                .collect(Collectors.toList());
-
-        //Remove the regular role from the current members if they are not top ten
-        getGuild().getMembers()
-                .forEach(member -> {
-                    if (member.getRoles().contains(getApi().getRoleById(discordConfiguration.getRegularRoleId())) && !topTwenty.contains(member.getId())) {
-                        getGuild().removeRoleFromMember(member, getApi().getRoleById(discordConfiguration.getRegularRoleId())).queue();
-                    }
-                });
-
-        //apply it to the top 20 members
-        topTwenty.stream()
-                .map(id -> getGuild().getMemberById(id))
-                .filter(Objects::nonNull)
-                .forEach(member -> addRoleToMember(member, Long.valueOf(discordConfiguration.getRegularRoleId())));
-
-    }
-
-    /**
-     * Will give the Veteran Coder role to top 5 on the leaderboard every 1 hour
-     */
-    @Scheduled(cron = "0 0 * * * *")
-    public void applyVeteranRoles() {
-
-        ArrayList<String> topFive = (ArrayList<String>) cortexMemberRepository.findAll()
-                .stream()
-                .sorted(Comparator.comparing(CortexMember::getPoints).reversed())
-                .limit(5)
-                .map(CortexMember::getUserID)
-                .collect(Collectors.toList());
-
-        //Remove the regular role from the current members if they are not top 5
-        getGuild().getMembers()
-                .forEach(member -> {
-                    if (member.getRoles().contains(getApi().getRoleById(discordConfiguration.getRegularRoleId())) && !topFive.contains(member.getId())) {
-                        getGuild().removeRoleFromMember(member, getApi().getRoleById(discordConfiguration.getVeteranRoleId())).queue();
-                    }
-                });
-
-        //apply it to the top 5 members
-        topFive.stream()
-                .map(id -> getGuild().getMemberById(id))
-                .filter(Objects::nonNull)
-                .forEach(member -> addRoleToMember(member, Long.valueOf(discordConfiguration.getVeteranRoleId())));
-
-    }
-
     public static String getUsernameFromUserID(String userId){
         return getApi().retrieveUserById(userId).complete().getAsTag();
     }
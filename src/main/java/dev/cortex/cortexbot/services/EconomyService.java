@@ -0,0 +1,252 @@
+package dev.cortex.cortexbot.services;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.result.UpdateResult;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import dev.cortex.cortexbot.model.CortexMember;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Economy wide points changes. Each runs as a single update on the server, after the member
+ * collection has been archived to a gzipped file with one JSON document per line. The update
+ * leaves each member's change behind, which is then published like any other points change.
+ */
+@Service
+public class EconomyService {
+
+    public record Report(String operation, long matched, long modified, Path archive, long archived, long millis) {}
+
+    //every points write bumps the version, documents from before it existed start at 0
+    //where the last run left its change on each member it touched, not mapped on CortexMember
+    private static final String CHANGE_FIELD = "economyChange";
+    private static final int PUBLISH_BATCH = 1_000;
+
+    private static final AggregationExpression NEXT_VERSION = context -> new Document("$add",
+            List.of(new Document("$ifNull", List.of("$pointsVersion", 0L)), 1L));
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RoleSyncService roleSyncService;
+    private final LedgerService ledgerService;
+    private final LoggingService loggingService;
+    private final MeterRegistry meterRegistry;
+    private final Path archiveDirectory;
+    private final int scheduledDecayPercent;
+
+    public EconomyService(MongoTemplate mongoTemplate,
+                          ApplicationEventPublisher eventPublisher,
+                          RoleSyncService roleSyncService,
+                          LedgerService ledgerService,
+                          LoggingService loggingService,
+                          MeterRegistry meterRegistry,
+                          @Value("${cortex.economy.archive-dir:archives}") String archiveDirectory,
+                          @Value("${cortex.economy.decay-percent:5}") int scheduledDecayPercent) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.roleSyncService = roleSyncService;
+        this.ledgerService = ledgerService;
+        this.loggingService = loggingService;
+        this.meterRegistry = meterRegistry;
+        this.archiveDirectory = Path.of(archiveDirectory);
+        this.scheduledDecayPercent = scheduledDecayPercent;
+    }
+
+    /**
+     * Sets everyone's points back to zero.
+     */
+    public Report reset() {
+        return run("reset", Criteria.where("points").ne(0), context -> new Document("$literal", 0L));
+    }
+
+    /**
+     * Takes a percentage off everyone's points, rounding down.
+     */
+    public Report decay(int percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Decay must be between 1 and 100 percent");
+        }
+        double keep = (100 - percent) / 100.0;
+
+        //multiply gives a double, bring it back to a long so sorting and $inc behave the same as before
+        AggregationExpression decayed = context -> new Document("$toLong",
+                new Document("$floor", new Document("$multiply", List.of("$points", keep))));
+
+        return run("decay " + percent + "%", Criteria.where("points").gt(0), decayed);
+    }
+
+    /**
+     * Raises everyone below the floor to it and lowers everyone above the cap to it.
+     */
+    public Report clamp(long floor, long cap) {
+        if (floor < 0 || cap < floor) {
+            throw new IllegalArgumentException("The floor must be at least 0 and no higher than the cap");
+        }
+
+        AggregationExpression clamped = context -> new Document("$max",
+                List.of(floor, new Document("$min", List.of(cap, "$points"))));
+
+        return run("clamp " + floor + "-" + cap,
+                new Criteria().orOperator(Criteria.where("points").lt(floor), Criteria.where("points").gt(cap)), clamped);
+    }
+
+    /**
+     * Optional recurring decay, off unless cortex.economy.decay-cron is set.
+     */
+    @Scheduled(cron = "${cortex.economy.decay-cron:-}")
+    public void scheduledDecay() {
+        try {
+            decay(scheduledDecayPercent);
+        } catch (RuntimeException e) {
+            System.out.println("Scheduled points decay failed");
+            e.printStackTrace();
+        }
+    }
+
+    private synchronized Report run(String operation, Criteria criteria, AggregationExpression points) {
+        long start = System.nanoTime();
+
+        //make sure every change so far is in the ledger before the totals move under it
+        ledgerService.flush();
+
+        Path archive = archiveDirectory.resolve("member-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".ndjson.gz");
+        long archived = archive(archive);
+
+        //each member changed keeps what this run did to them, read back below to publish the changes
+        String runID = new ObjectId().toHexString();
+        AggregationExpression change = context -> new Document("run", new Document("$literal", runID))
+                .append("delta", new Document("$subtract", List.of(points.toDocument(context), "$points")))
+                .append("balance", points.toDocument(context))
+                .append("version", NEXT_VERSION.toDocument(context));
+
+        //the change is set first, so it reads the points from before the update either way
+        UpdateResult result = mongoTemplate.updateMulti(Query.query(criteria),
+                AggregationUpdate.update()
+                        .set(CHANGE_FIELD).toValue(change)
+                        .set("points").toValue(points)
+                        .set("pointsVersion").toValue(NEXT_VERSION),
+                CortexMember.class);
+
+        long published = publishChanges(operation, runID);
+
+        //balances are snapshotted right away, so /history does not replay the whole run for everyone
+        ledgerService.snapshotBalances();
+        try {
+            roleSyncService.reconcileRoles();
+        } catch (RuntimeException e) {
+            //the safety net job will catch up
+            System.out.println("Failed to reconcile roles after economy " + operation);
+            e.printStackTrace();
+        }
+
+        long nanos = System.nanoTime() - start;
+        Timer.builder("cortex.economy.run")
+                .description("Time taken by economy wide points changes, archive included")
+                .tag("operation", operation.split(" ")[0])
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        Report report = new Report(operation, result.getMatchedCount(), result.getModifiedCount(), archive, archived, nanos / 1_000_000);
+        System.out.println("Economy " + operation + " changed " + report.modified() + " of " + report.matched()
+                + " members in " + report.millis() + "ms, published " + published + " changes, archived " + archived + " to " + archive);
+        loggingService.log("Economy " + operation + " changed the points of " + report.modified() + " members in " + report.millis() + "ms. Archive: " + archive.getFileName());
+
+        return report;
+    }
+
+    /**
+     * Publishes what the run did to each member as points changes, in batches, so the ledger, the
+     * audit journal and the rankings see it like any other change. Members whose delta came out as
+     * 0 are skipped.
+     */
+    private long publishChanges(String operation, String runID) {
+        PointsChangedEvent.Cause cause = new PointsChangedEvent.Cause(PointsChangedEvent.Action.ECONOMY, null, operation);
+
+        Query query = Query.query(Criteria.where(CHANGE_FIELD + ".run").is(runID));
+        query.fields().include("userID").include(CHANGE_FIELD);
+
+        long published = 0;
+        List<PointsChangedEvent.Change> changes = new ArrayList<>();
+        try (Stream<Document> members = mongoTemplate.stream(query, Document.class, mongoTemplate.getCollectionName(CortexMember.class))) {
+            Iterator<Document> iterator = members.iterator();
+            while (iterator.hasNext()) {
+                Document member = iterator.next();
+                Document change = member.get(CHANGE_FIELD, Document.class);
+                long delta = change.get("delta", Number.class).longValue();
+                if (delta == 0) {
+                    continue;
+                }
+
+                changes.add(new PointsChangedEvent.Change(member.getString("userID"), delta,
+                        change.get("balance", Number.class).longValue(), change.get("version", Number.class).longValue()));
+                if (changes.size() >= PUBLISH_BATCH) {
+                    eventPublisher.publishEvent(new PointsChangedEvent(cause, changes));
+                    published += changes.size();
+                    changes = new ArrayList<>();
+                }
+            }
+        }
+
+        if (!changes.isEmpty()) {
+            eventPublisher.publishEvent(new PointsChangedEvent(cause, changes));
+            published += changes.size();
+        }
+
+        return published;
+    }
+
+    /**
+     * Streams every member document to the archive file, so nothing is held in memory at once.
+     */
+    private long archive(Path file) {
+        long count = 0;
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8));
+                 MongoCursor<Document> cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(CortexMember.class)).find().iterator()) {
+
+                while (cursor.hasNext()) {
+                    writer.write(cursor.next().toJson());
+                    writer.newLine();
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            //never run a destructive change without its archive
+            throw new UncheckedIOException("Could not archive the member collection to " + file, e);
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,372 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.model.JobCheckpoint;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.utils.TimeUtil;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds message counts by reading the history of whole channels. Channels are crawled in parallel,
+ * each one on its own worker, which keeps every worker on its own rate limit bucket since JDA limits
+ * the history route per channel. Progress and the tallies so far are checkpointed per channel, so a
+ * crawl picks up where it left off after a restart. Once every channel is done the totals are written
+ * to the members in one bulk write. The live counts are snapshotted when a crawl starts, messages newer
+ * than the snapshot are left to the live counter, so they are kept on top of the history totals.
+ * A cancelled or failed crawl writes nothing, its checkpoints and snapshot wait until it is started again.
+ */
+@Service
+public class HistoryCrawler {
+
+    public record Progress(boolean running,
+                           int channels,
+                           int channelsDone,
+                           long pages,
+                           long messages,
+                           double pagesPerSecond,
+                           @Nullable Duration remaining) {
+    }
+
+    private static final String JOB_PREFIX = "history:";
+    //the live message counts when the crawl started, kept until its totals are written so a resumed crawl uses the same ones
+    private static final String BASELINE_JOB = "history-baseline";
+    private static final int PAGE_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final LoggingService loggingService;
+    private final ActivityAggregator activityAggregator;
+    private final int checkpointPages;
+
+    private final ExecutorService workers;
+    private final Counter pagesRead;
+
+    private volatile Crawl current;
+
+    public HistoryCrawler(MongoTemplate mongoTemplate,
+                          LoggingService loggingService,
+                          ActivityAggregator activityAggregator,
+                          MeterRegistry meterRegistry,
+                          @Value("${cortex.crawler.parallelism:4}") int parallelism,
+                          @Value("${cortex.crawler.checkpoint-pages:10}") int checkpointPages) {
+        this.mongoTemplate = mongoTemplate;
+        this.loggingService = loggingService;
+        this.activityAggregator = activityAggregator;
+        this.checkpointPages = checkpointPages;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "history-crawler-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.pagesRead = Counter.builder("cortex.crawler.pages")
+                .description("Pages of channel history read by the crawler")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts crawling the channels, carrying on from the checkpoint of any channel that was not finished.
+     * Once a crawl's totals are written its checkpoints are removed, so the next crawl reads channels from the newest message.
+     *
+     * @return false if a crawl is already running
+     */
+    public synchronized boolean start(List<TextChannel> channels) {
+        if (current != null && current.isRunning()) {
+            return false;
+        }
+
+        Crawl crawl = new Crawl(loadBaseline());
+        for (TextChannel channel : channels) {
+            //a channel finished earlier against the same snapshot is already counted and is not crawled again
+            JobCheckpoint checkpoint = mongoTemplate.findById(JOB_PREFIX + channel.getId(), JobCheckpoint.class);
+            if (checkpoint == null) {
+                checkpoint = new JobCheckpoint();
+                checkpoint.setId(JOB_PREFIX + channel.getId());
+            }
+            crawl.channels.add(new ChannelCrawl(channel, checkpoint));
+        }
+
+        current = crawl;
+        crawl.running.set(crawl.channels.size());
+        crawl.channels.forEach(channelCrawl -> workers.execute(() -> crawl(crawl, channelCrawl)));
+        return true;
+    }
+
+    public void cancel() {
+        Crawl crawl = current;
+        if (crawl != null) {
+            crawl.cancelled = true;
+        }
+    }
+
+    @Nullable
+    public Progress getProgress() {
+        Crawl crawl = current;
+        return crawl == null ? null : crawl.progress();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        Query query = Query.query(Criteria.where("_id").regex("^" + JOB_PREFIX).and("done").is(false));
+        query.fields().include("_id");
+
+        List<TextChannel> channels = mongoTemplate.find(query, JobCheckpoint.class).stream()
+                .map(checkpoint -> DiscordBot.getApi().getTextChannelById(checkpoint.getId().substring(JOB_PREFIX.length())))
+                .filter(Objects::nonNull)
+                .toList();
+
+        if (!channels.isEmpty()) {
+            System.out.println("Resuming the history crawl of " + channels.size() + " channels");
+            start(channels);
+        }
+    }
+
+    /**
+     * Gets the live counts of the crawl that is being resumed, or snapshots them for a new crawl.
+     */
+    private JobCheckpoint loadBaseline() {
+        JobCheckpoint baseline = mongoTemplate.findById(BASELINE_JOB, JobCheckpoint.class);
+        if (baseline != null && !baseline.isDone()) {
+            return baseline;
+        }
+
+        //checkpoints left without an open snapshot can't be matched against this one, their channels are read again
+        mongoTemplate.remove(Query.query(Criteria.where("_id").regex("^" + JOB_PREFIX)), JobCheckpoint.class);
+
+        baseline = new JobCheckpoint();
+        baseline.setId(BASELINE_JOB);
+        baseline.setStartedAt(new Date());
+
+        //messages still waiting to be written would otherwise be counted as sent after the snapshot
+        try {
+            activityAggregator.flush();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        Query query = new Query();
+        query.fields().include("userID").include("messagesSent");
+        try (Stream<CortexMember> members = mongoTemplate.stream(query, CortexMember.class)) {
+            for (CortexMember member : (Iterable<CortexMember>) members::iterator) {
+                if (member.getUserID() != null && member.getMessagesSent() > 0) {
+                    baseline.getCounts().put(member.getUserID(), member.getMessagesSent());
+                }
+            }
+        }
+
+        save(baseline);
+        return baseline;
+    }
+
+    private void crawl(Crawl crawl, ChannelCrawl channelCrawl) {
+        JobCheckpoint checkpoint = channelCrawl.checkpoint;
+        long snapshotAt = crawl.baseline.getStartedAt().getTime();
+        int unsaved = 0;
+
+        try {
+            while (!crawl.cancelled && !checkpoint.isDone()) {
+                List<Message> page = checkpoint.getLastMessageID() == null
+                        ? channelCrawl.channel.getHistory().retrievePast(PAGE_SIZE).complete()
+                        : channelCrawl.channel.getHistoryBefore(checkpoint.getLastMessageID(), PAGE_SIZE).complete().getRetrievedHistory();
+
+                if (page.isEmpty()) {
+                    checkpoint.setDone(true);
+                    break;
+                }
+
+                for (Message message : page) {
+                    //the same messages the live counter skips, and the ones it counted after the snapshot
+                    if (!message.getAuthor().isBot() && !message.isWebhookMessage()
+                            && message.getTimeCreated().toInstant().toEpochMilli() <= snapshotAt) {
+                        checkpoint.getCounts().merge(message.getAuthor().getId(), 1L, Long::sum);
+                    }
+                }
+
+                //pages come newest first, so the last one is where the next page starts
+                Message oldest = page.get(page.size() - 1);
+                checkpoint.setLastMessageID(oldest.getId());
+                checkpoint.setProcessed(checkpoint.getProcessed() + page.size());
+                channelCrawl.position = oldest.getTimeCreated().toInstant().toEpochMilli();
+
+                crawl.pages.incrementAndGet();
+                crawl.messages.addAndGet(page.size());
+                pagesRead.increment();
+
+                if (++unsaved >= checkpointPages) {
+                    save(checkpoint);
+                    unsaved = 0;
+                }
+            }
+        } catch (RuntimeException e) {
+            //the checkpoint below keeps what was read, starting the channel again carries on from there
+            System.out.println("History crawl of #" + channelCrawl.channel.getName() + " stopped");
+            e.printStackTrace();
+            crawl.failed = true;
+        }
+
+        try {
+            save(checkpoint);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+
+        if (crawl.running.decrementAndGet() == 0) {
+            finish(crawl);
+        }
+    }
+
+    private void save(JobCheckpoint checkpoint) {
+        checkpoint.setUpdatedAt(new Date());
+        mongoTemplate.save(checkpoint);
+    }
+
+    /**
+     * Writes the totals once every channel counted against the snapshot is done. Each member gets the
+     * history total plus whatever the live counter added since the snapshot, as an $inc of the difference
+     * to the snapshot. Members whose snapshot was already higher, e.g. because the crawl only covered
+     * some channels, are left alone. Afterwards the checkpoints and the snapshot are retired, so the
+     * same messages can't be added again.
+     */
+    private void finish(Crawl crawl) {
+        Progress progress = crawl.progress();
+        String summary = "History crawl " + (crawl.cancelled ? "cancelled" : crawl.failed ? "stopped" : "finished") + ": "
+                + progress.channelsDone() + "/" + progress.channels() + " channels, " + progress.messages() + " messages in " + progress.pages() + " pages ("
+                + String.format("%.1f", progress.pagesPerSecond()) + " pages/s).";
+
+        Query unfinished = Query.query(Criteria.where("_id").regex("^" + JOB_PREFIX).and("done").is(false));
+        if (crawl.cancelled || crawl.failed || progress.channelsDone() < progress.channels() || mongoTemplate.exists(unfinished, JobCheckpoint.class)) {
+            summary += " Message counts are written once every channel is done, start the crawl again to carry on.";
+            System.out.println(summary);
+            loggingService.log(summary);
+            return;
+        }
+
+        Map<String, Long> totals = new HashMap<>();
+        Query counted = Query.query(Criteria.where("_id").regex("^" + JOB_PREFIX));
+        for (JobCheckpoint checkpoint : mongoTemplate.find(counted, JobCheckpoint.class)) {
+            checkpoint.getCounts().forEach((userID, count) -> totals.merge(userID, count, Long::sum));
+        }
+
+        Map<String, Long> baseline = crawl.baseline.getCounts();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CortexMember.class);
+        int raised = 0;
+        for (Map.Entry<String, Long> total : totals.entrySet()) {
+            long missing = total.getValue() - baseline.getOrDefault(total.getKey(), 0L);
+            if (missing > 0) {
+                //only members we already know, people who left long ago don't need a member document
+                bulk.updateOne(Query.query(Criteria.where("userID").is(total.getKey())), new Update().inc("messagesSent", missing));
+                raised++;
+            }
+        }
+
+        if (raised > 0) {
+            bulk.execute();
+        }
+
+        mongoTemplate.remove(counted, JobCheckpoint.class);
+        crawl.baseline.setDone(true);
+        save(crawl.baseline);
+
+        summary += " Message counts of " + raised + "/" + totals.size() + " members raised.";
+        System.out.println(summary);
+        loggingService.log(summary);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        //workers save their checkpoint on the way out
+        cancel();
+        workers.shutdown();
+    }
+
+    private static class Crawl {
+
+        private final JobCheckpoint baseline;
+        private final List<ChannelCrawl> channels = new ArrayList<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong messages = new AtomicLong();
+        private final long startedAt = System.currentTimeMillis();
+        private volatile boolean cancelled;
+        private volatile boolean failed;
+
+        private Crawl(JobCheckpoint baseline) {
+            this.baseline = baseline;
+        }
+
+        private boolean isRunning() {
+            return running.get() > 0;
+        }
+
+        /**
+         * Estimates what is left from how far back in time each channel has got, compared to when it was created.
+         */
+        private Progress progress() {
+            double seconds = Math.max(1, System.currentTimeMillis() - startedAt) / 1000.0;
+
+            long covered = 0;
+            long left = 0;
+            int done = 0;
+            for (ChannelCrawl channelCrawl : channels) {
+                covered += channelCrawl.startPosition - channelCrawl.position;
+                if (channelCrawl.checkpoint.isDone()) {
+                    done++;
+                } else {
+                    left += channelCrawl.position - channelCrawl.created;
+                }
+            }
+
+            Duration remaining = covered <= 0 ? null : Duration.ofMillis((long) (seconds * 1000 * left / covered));
+            return new Progress(isRunning(), channels.size(), done, pages.get(), messages.get(), pages.get() / seconds, remaining);
+        }
+
+    }
+
+    private static class ChannelCrawl {
+
+        private final TextChannel channel;
+        private final JobCheckpoint checkpoint;
+        private final long created;
+        private final long startPosition;
+        private volatile long position;
+
+        private ChannelCrawl(TextChannel channel, JobCheckpoint checkpoint) {
+            this.channel = channel;
+            this.checkpoint = checkpoint;
+            this.created = channel.getTimeCreated().toInstant().toEpochMilli();
+            this.startPosition = checkpoint.getLastMessageID() == null
+                    ? System.currentTimeMillis()
+                    : TimeUtil.getTimeCreated(Long.parseLong(checkpoint.getLastMessageID())).toInstant().toEpochMilli();
+            this.position = startPosition;
+        }
+
+    }
+
+}
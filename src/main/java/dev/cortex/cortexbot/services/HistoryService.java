@@ -0,0 +1,118 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.LedgerEntry;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds pages of a member's points history from the ledger. Like the leaderboard, the cursor
+ * (timestamp and id of the entry at the edge of the page) lives in the button IDs.
+ */
+@Service
+public class HistoryService {
+
+    public static final int PAGE_SIZE = 10;
+
+    private static final String OLDER = "history-older";
+    private static final String NEWER = "history-newer";
+
+    private final LedgerService ledgerService;
+
+    public HistoryService(LedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    public MessageCreateData getFirstPage(String userID, String name) {
+        //fetch one extra to know if there are older entries
+        List<LedgerEntry> entries = ledgerService.getLatestEntries(userID, PAGE_SIZE + 1);
+        return render(userID, name, firstPage(entries), false, entries.size() > PAGE_SIZE);
+    }
+
+    public boolean isPageButton(String componentId) {
+        return componentId.startsWith(OLDER + ":") || componentId.startsWith(NEWER + ":");
+    }
+
+    /**
+     * Replaces the history message the button is on with the page it points to.
+     */
+    public void turnPage(ButtonInteractionEvent event) {
+
+        //format is direction:userID:timestamp:id
+        String[] cursor = event.getComponentId().split(":");
+        String userID = cursor[1];
+        Date timestamp = new Date(Long.parseLong(cursor[2]));
+        String id = cursor[3];
+
+        String name = event.getJDA().getUserById(userID) == null ? userID : event.getJDA().getUserById(userID).getName();
+        MessageCreateData page;
+
+        if (cursor[0].equals(OLDER)) {
+            List<LedgerEntry> entries = ledgerService.getEntriesBefore(userID, timestamp, id, PAGE_SIZE + 1);
+            page = render(userID, name, firstPage(entries), true, entries.size() > PAGE_SIZE);
+        } else {
+            List<LedgerEntry> entries = ledgerService.getEntriesAfter(userID, timestamp, id, PAGE_SIZE + 1);
+            boolean hasNewer = entries.size() > PAGE_SIZE;
+
+            //these come back closest first, so flip them to newest first
+            List<LedgerEntry> newer = new ArrayList<>(firstPage(entries));
+            Collections.reverse(newer);
+
+            page = render(userID, name, newer, hasNewer, true);
+        }
+
+        event.editMessage(MessageEditData.fromCreateData(page)).queue();
+    }
+
+    private List<LedgerEntry> firstPage(List<LedgerEntry> entries) {
+        return entries.subList(0, Math.min(entries.size(), PAGE_SIZE));
+    }
+
+    private MessageCreateData render(String userID, String name, List<LedgerEntry> page, boolean hasNewer, boolean hasOlder) {
+
+        MessageCreateBuilder message = new MessageCreateBuilder();
+
+        message.addContent("**Points history for " + name + "**").addContent("\n\n");
+
+        for (LedgerEntry entry : page) {
+            message.addContent("<t:" + entry.getTimestamp().getTime() / 1000 + ":f> ")
+                    .addContent("`" + (entry.getDelta() >= 0 ? "+" : "") + entry.getDelta() + "` ")
+                    .addContent(entry.getAction().name().toLowerCase());
+            if (entry.getActor() != null && !entry.getActor().equals(userID)) {
+                message.addContent(" by <@" + entry.getActor() + ">");
+            }
+            if (entry.getReason() != null) {
+                message.addContent(" - \"" + entry.getReason() + "\"");
+            }
+            message.addContent("\n");
+        }
+
+        if (page.isEmpty()) {
+            message.addContent("No points history.").addContent("\n");
+        }
+
+        Button newer = page.isEmpty() || !hasNewer
+                ? Button.secondary(NEWER + ":none", "Newer").asDisabled()
+                : Button.secondary(cursor(NEWER, userID, page.get(0)), "Newer");
+        Button older = page.isEmpty() || !hasOlder
+                ? Button.secondary(OLDER + ":none", "Older").asDisabled()
+                : Button.secondary(cursor(OLDER, userID, page.get(page.size() - 1)), "Older");
+
+        message.setActionRow(newer, older);
+
+        return message.build();
+    }
+
+    private String cursor(String direction, String userID, LedgerEntry entry) {
+        return direction + ":" + userID + ":" + entry.getTimestamp().getTime() + ":" + entry.getId();
+    }
+
+}
@@ -0,0 +1,148 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.CortexMember;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import net.dv8tion.jda.api.utils.messages.MessageEditData;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds leaderboard pages. The cursor for the next and previous page (points, id and rank of
+ * the member at the edge of the page) lives in the button IDs, so nothing is kept per user.
+ */
+@Service
+public class LeaderboardService {
+
+    public static final int PAGE_SIZE = 15;
+
+    private static final String NEXT = "leaderboard-next";
+    private static final String PREVIOUS = "leaderboard-prev";
+
+    private final PointsService pointsService;
+    private final DailyActivityService dailyActivityService;
+
+    public LeaderboardService(PointsService pointsService, DailyActivityService dailyActivityService) {
+        this.pointsService = pointsService;
+        this.dailyActivityService = dailyActivityService;
+    }
+
+    public MessageCreateData getFirstPage() {
+        //fetch one extra to know if there is a next page
+        List<CortexMember> members = pointsService.getTopMembers(PAGE_SIZE + 1);
+        return render(firstPage(members), 1, false, members.size() > PAGE_SIZE);
+    }
+
+    /**
+     * The top earners of a recent window, summed from the daily buckets rather than lifetime points.
+     */
+    public MessageCreateData getWindowPage(DailyActivityService.Window window) {
+
+        List<DailyActivityService.Entry> entries = dailyActivityService.getTop(window, PAGE_SIZE);
+
+        MessageCreateBuilder message = new MessageCreateBuilder();
+
+        message.addContent("---------------------------------------------------------------------------------------------").addContent("\n");
+        message.addContent("\uD83D\uDE80 **Top Earners " + window.getLabel() + "** \uD83D\uDE80").addContent("\n\n");
+
+        for (int i = 0; i < entries.size(); i++){
+            addRank(message, i + 1, entries.get(i).userID(), entries.get(i).points());
+        }
+
+        if (entries.isEmpty()){
+            message.addContent("Nobody has earned any points " + window.getLabel() + " yet.").addContent("\n");
+        }
+
+        message.addContent("\nYou can get points by being active in the server and helping others.").addContent("\n");
+        message.addContent("---------------------------------------------------------------------------------------------");
+
+        return message.build();
+    }
+
+    public boolean isPageButton(String componentId) {
+        return componentId.startsWith(NEXT + ":") || componentId.startsWith(PREVIOUS + ":");
+    }
+
+    /**
+     * Replaces the leaderboard message the button is on with the page it points to.
+     */
+    public void turnPage(ButtonInteractionEvent event) {
+
+        //format is direction:points:id:rank
+        String[] cursor = event.getComponentId().split(":");
+        long points = Long.parseLong(cursor[1]);
+        String id = cursor[2];
+        int rank = Integer.parseInt(cursor[3]);
+
+        MessageCreateData page;
+
+        if (cursor[0].equals(NEXT)) {
+            List<CortexMember> members = pointsService.getMembersAfter(points, id, PAGE_SIZE + 1);
+            page = render(firstPage(members), rank + 1, true, members.size() > PAGE_SIZE);
+        } else {
+            List<CortexMember> members = pointsService.getMembersBefore(points, id, PAGE_SIZE + 1);
+            boolean hasPrevious = members.size() > PAGE_SIZE;
+
+            //these come back closest first, so flip them to highest first
+            List<CortexMember> previous = new ArrayList<>(firstPage(members));
+            Collections.reverse(previous);
+
+            int firstRank = hasPrevious ? Math.max(rank - PAGE_SIZE, 2) : 1;
+            page = render(previous, firstRank, hasPrevious, true);
+        }
+
+        event.editMessage(MessageEditData.fromCreateData(page)).queue();
+    }
+
+    private List<CortexMember> firstPage(List<CortexMember> members) {
+        return members.subList(0, Math.min(members.size(), PAGE_SIZE));
+    }
+
+    private MessageCreateData render(List<CortexMember> page, int firstRank, boolean hasPrevious, boolean hasNext) {
+
+        MessageCreateBuilder message = new MessageCreateBuilder();
+
+        message.addContent("---------------------------------------------------------------------------------------------").addContent("\n");
+        message.addContent("\uD83D\uDE80 **Leaderboard Rankings** \uD83D\uDE80").addContent("\n\n");
+
+        for (int i = 0; i < page.size(); i++){
+            addRank(message, firstRank + i, page.get(i).getUserID(), page.get(i).getPoints());
+        }
+
+        if (page.isEmpty()){
+            message.addContent("There is nobody further down the leaderboard.").addContent("\n");
+        }
+
+        message.addContent("\nYou can get points by being active in the server and helping others.").addContent("\n");
+        message.addContent("---------------------------------------------------------------------------------------------");
+
+        Button previous = page.isEmpty() || !hasPrevious
+                ? Button.secondary(PREVIOUS + ":none", "Previous").asDisabled()
+                : Button.secondary(cursor(PREVIOUS, page.get(0), firstRank), "Previous");
+        Button next = page.isEmpty() || !hasNext
+                ? Button.secondary(NEXT + ":none", "Next").asDisabled()
+                : Button.secondary(cursor(NEXT, page.get(page.size() - 1), firstRank + page.size() - 1), "Next");
+
+        message.setActionRow(previous, next);
+
+        return message.build();
+    }
+
+    private void addRank(MessageCreateBuilder message, int rank, String userID, long points) {
+        message.addContent("(" + rank + ") - ").addContent("<@" + userID + "> *-* " + points + " pts");
+        if (rank == 1) message.addContent(":first_place:");
+        if (rank == 2) message.addContent(":second_place:");
+        if (rank == 3) message.addContent(":third_place:");
+        message.addContent("\n");
+    }
+
+    private String cursor(String direction, CortexMember member, int rank) {
+        return direction + ":" + member.getPoints() + ":" + member.getId() + ":" + rank;
+    }
+
+}
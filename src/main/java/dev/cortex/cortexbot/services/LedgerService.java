@@ -0,0 +1,346 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import dev.cortex.cortexbot.model.BalanceSnapshot;
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.model.LedgerEntry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes every points change to the append-only ledger in batches, and snapshots all balances
+ * periodically so a balance at any point in time only needs the ledger entries after the last snapshot.
+ * Entries carry the member's pointsVersion, so replaying after a snapshot skips exactly the changes the
+ * snapshot already read. Entries not written yet are served from memory, reads never wait for a flush.
+ */
+@Service
+public class LedgerService {
+
+    private static final int SNAPSHOT_BATCH = 1_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ActivityAggregator activityAggregator;
+    private final int maxBatch;
+    private final long snapshotRetentionDays;
+
+    private final ConcurrentLinkedQueue<LedgerEntry> pending = new ConcurrentLinkedQueue<>();
+    //guards moving entries from pending to the database, so a reader always finds them in one of the two
+    private final Object buffers = new Object();
+    private List<LedgerEntry> writing = List.of();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ledger-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final DistributionSummary batchSize;
+
+    public LedgerService(MongoTemplate mongoTemplate,
+                         ActivityAggregator activityAggregator,
+                         MeterRegistry meterRegistry,
+                         @Value("${cortex.ledger.flush-max-entries:500}") int maxBatch,
+                         @Value("${cortex.ledger.snapshot-retention-days:30}") long snapshotRetentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.activityAggregator = activityAggregator;
+        this.maxBatch = maxBatch;
+        this.snapshotRetentionDays = snapshotRetentionDays;
+        this.batchSize = DistributionSummary.builder("cortex.ledger.batch.size")
+                .description("Ledger entries written per insert")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onPointsChanged(PointsChangedEvent event) {
+        Date now = new Date();
+        PointsChangedEvent.Cause cause = event.cause();
+        String reason = cause.reason() == null || cause.reason().isBlank() ? null : cause.reason();
+
+        for (PointsChangedEvent.Change change : event.changes()) {
+            LedgerEntry entry = new LedgerEntry();
+            //the id is set here so entries read from memory page the same way as written ones
+            entry.setId(new ObjectId().toHexString());
+            entry.setTarget(change.userID());
+            entry.setActor(cause.actorID());
+            entry.setAction(cause.action());
+            entry.setDelta(change.delta());
+            entry.setReason(reason);
+            entry.setTimestamp(now);
+            entry.setVersion(change.balance() == null ? 0 : change.version());
+
+            pending.add(entry);
+        }
+
+        //the listener runs on the command's thread, so a full batch is written on the flusher instead
+        if (pendingCount.addAndGet(event.changes().size()) >= maxBatch && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    /**
+     * Inserts everything collected so far with a single insertMany.
+     */
+    @Scheduled(fixedDelayString = "${cortex.ledger.flush-interval-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public synchronized void flush() {
+        flushRequested.set(false);
+
+        List<LedgerEntry> batch = new ArrayList<>();
+        synchronized (buffers) {
+            LedgerEntry entry;
+            while ((entry = pending.poll()) != null) {
+                batch.add(entry);
+            }
+
+            if (batch.isEmpty()) {
+                return;
+            }
+            writing = batch;
+        }
+        pendingCount.addAndGet(-batch.size());
+
+        try {
+            mongoTemplate.insert(batch, LedgerEntry.class);
+            batchSize.record(batch.size());
+        } catch (RuntimeException e) {
+            //keep them for the next flush, entries are timestamped so the order they land in does not matter
+            synchronized (buffers) {
+                pending.addAll(batch);
+            }
+            pendingCount.addAndGet(batch.size());
+            System.out.println("Failed to write " + batch.size() + " ledger entries, will retry");
+            e.printStackTrace();
+        } finally {
+            synchronized (buffers) {
+                writing = List.of();
+            }
+        }
+    }
+
+    /**
+     * Copies every member's points and pointsVersion into the snapshot collection and drops snapshots past retention.
+     * Activity is held back while the members are read, message points only know their deltas and would
+     * otherwise land on either side of the snapshot with no way to tell.
+     */
+    @Scheduled(cron = "${cortex.ledger.snapshot-cron:0 30 4 * * *}")
+    public void snapshotBalances() {
+        flush();
+
+        Query query = new Query();
+        query.fields().include("userID").include("points").include("pointsVersion");
+
+        Date takenAt = new Date();
+        int written;
+        try {
+            written = activityAggregator.whileIdle(() -> {
+                //entries published by the last activity flush are stamped no later than this
+                takenAt.setTime(System.currentTimeMillis());
+
+                int count = 0;
+                List<BalanceSnapshot> batch = new ArrayList<>(SNAPSHOT_BATCH);
+                try (Stream<CortexMember> members = mongoTemplate.stream(query, CortexMember.class)) {
+                    for (CortexMember member : (Iterable<CortexMember>) members::iterator) {
+                        BalanceSnapshot snapshot = new BalanceSnapshot();
+                        snapshot.setUserID(member.getUserID());
+                        snapshot.setPoints(member.getPoints());
+                        snapshot.setVersion(member.getPointsVersion());
+                        snapshot.setTakenAt(takenAt);
+                        batch.add(snapshot);
+
+                        if (batch.size() == SNAPSHOT_BATCH) {
+                            mongoTemplate.insert(batch, BalanceSnapshot.class);
+                            count += batch.size();
+                            batch = new ArrayList<>(SNAPSHOT_BATCH);
+                        }
+                    }
+                }
+
+                if (!batch.isEmpty()) {
+                    mongoTemplate.insert(batch, BalanceSnapshot.class);
+                    count += batch.size();
+                }
+                return count;
+            });
+        } catch (RuntimeException e) {
+            //a run missing members would read as those members having had nothing
+            mongoTemplate.remove(Query.query(Criteria.where("takenAt").is(takenAt)), BalanceSnapshot.class);
+            throw e;
+        }
+
+        Date cutoff = Date.from(Instant.now().minus(snapshotRetentionDays, ChronoUnit.DAYS));
+        mongoTemplate.remove(Query.query(Criteria.where("takenAt").lt(cutoff)), BalanceSnapshot.class);
+
+        System.out.println("Snapshotted the balances of " + written + " members");
+    }
+
+    /**
+     * @return when the oldest snapshot run still kept was taken, balances can't be rebuilt before it
+     */
+    @Nullable
+    public Date getOldestSnapshot() {
+        BalanceSnapshot oldest = mongoTemplate.findOne(new Query().with(Sort.by(Sort.Direction.ASC, "takenAt")), BalanceSnapshot.class);
+        return oldest == null ? null : oldest.getTakenAt();
+    }
+
+    /**
+     * Rebuilds a member's balance at a point in time from the last snapshot run before it plus the ledger
+     * entries after that run. An entry with a version counts if it is newer than the version the snapshot
+     * read, one without counts if it was made after the run started.
+     *
+     * @return null if there is no snapshot run at or before the time, the ledger alone can't tell what they had before it
+     */
+    @Nullable
+    public Long getBalanceAt(String userID, Date at) {
+        Query runQuery = Query.query(Criteria.where("takenAt").lte(at))
+                .with(Sort.by(Sort.Direction.DESC, "takenAt"));
+        BalanceSnapshot latestRun = mongoTemplate.findOne(runQuery, BalanceSnapshot.class);
+        if (latestRun == null) {
+            return null;
+        }
+        Date run = latestRun.getTakenAt();
+
+        //members are never removed, so someone missing from the run joined after it with nothing
+        BalanceSnapshot snapshot = mongoTemplate.findOne(Query.query(Criteria.where("userID").is(userID).and("takenAt").is(run)), BalanceSnapshot.class);
+        long version = snapshot == null ? 0 : snapshot.getVersion();
+
+        //read before the database, anything written in between is left out of the database sum by id
+        List<LedgerEntry> unwritten = unwritten(userID);
+        long replayed = 0;
+        for (LedgerEntry entry : unwritten) {
+            boolean afterRun = entry.getVersion() != 0 ? entry.getVersion() > version : entry.getTimestamp().after(run);
+            if (afterRun && !entry.getTimestamp().after(at)) {
+                replayed += entry.getDelta();
+            }
+        }
+
+        //entries from before versions were kept have no version field at all
+        Criteria after = new Criteria().orOperator(
+                Criteria.where("version").gt(version),
+                Criteria.where("version").in(0L, null).and("timestamp").gt(run));
+        Criteria tail = new Criteria().andOperator(
+                Criteria.where("target").is(userID).and("timestamp").lte(at),
+                Criteria.where("_id").nin(unwritten.stream().map(LedgerEntry::getId).toList()),
+                after);
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(tail),
+                Aggregation.group().sum("delta").as("total"));
+        Document result = mongoTemplate.aggregate(aggregation, LedgerEntry.class, Document.class).getUniqueMappedResult();
+        replayed += result == null ? 0 : ((Number) result.get("total")).longValue();
+
+        return (snapshot == null ? 0 : snapshot.getPoints()) + replayed;
+    }
+
+    public List<LedgerEntry> getLatestEntries(String userID, int limit) {
+        Query query = Query.query(Criteria.where("target").is(userID))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "id"))
+                .limit(limit);
+        return withUnwritten(userID, () -> mongoTemplate.find(query, LedgerEntry.class), entry -> true, NEWEST_FIRST, limit);
+    }
+
+    /**
+     * Gets the entries older than the given one, newest first, seeking on the (target, timestamp) index.
+     */
+    public List<LedgerEntry> getEntriesBefore(String userID, Date timestamp, String id, int limit) {
+        Query query = Query.query(Criteria.where("target").is(userID).orOperator(
+                        Criteria.where("timestamp").lt(timestamp),
+                        Criteria.where("timestamp").is(timestamp).and("id").lt(id)))
+                .with(Sort.by(Sort.Direction.DESC, "timestamp", "id"))
+                .limit(limit);
+        LedgerEntry edge = edge(timestamp, id);
+        return withUnwritten(userID, () -> mongoTemplate.find(query, LedgerEntry.class), entry -> NEWEST_FIRST.compare(entry, edge) > 0, NEWEST_FIRST, limit);
+    }
+
+    /**
+     * Gets the entries newer than the given one, closest first.
+     */
+    public List<LedgerEntry> getEntriesAfter(String userID, Date timestamp, String id, int limit) {
+        Query query = Query.query(Criteria.where("target").is(userID).orOperator(
+                        Criteria.where("timestamp").gt(timestamp),
+                        Criteria.where("timestamp").is(timestamp).and("id").gt(id)))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp", "id"))
+                .limit(limit);
+        LedgerEntry edge = edge(timestamp, id);
+        return withUnwritten(userID, () -> mongoTemplate.find(query, LedgerEntry.class), entry -> NEWEST_FIRST.compare(entry, edge) < 0, NEWEST_FIRST.reversed(), limit);
+    }
+
+    //ObjectId hex strings sort the same way as the ids in the database
+    private static final Comparator<LedgerEntry> NEWEST_FIRST = Comparator.comparing(LedgerEntry::getTimestamp)
+            .thenComparing(LedgerEntry::getId)
+            .reversed();
+
+    private static LedgerEntry edge(Date timestamp, String id) {
+        LedgerEntry edge = new LedgerEntry();
+        edge.setTimestamp(timestamp);
+        edge.setId(id);
+        return edge;
+    }
+
+    /**
+     * Adds the member's entries that are not in the database yet to a page read from it.
+     */
+    private List<LedgerEntry> withUnwritten(String userID, Supplier<List<LedgerEntry>> read, Predicate<LedgerEntry> onPage,
+                                            Comparator<LedgerEntry> order, int limit) {
+        List<LedgerEntry> unwritten = unwritten(userID);
+        List<LedgerEntry> written = read.get();
+        if (unwritten.isEmpty()) {
+            return written;
+        }
+
+        //an entry can be in both if it was written between the two reads
+        Map<String, LedgerEntry> merged = new LinkedHashMap<>();
+        written.forEach(entry -> merged.put(entry.getId(), entry));
+        unwritten.stream().filter(onPage).forEach(entry -> merged.putIfAbsent(entry.getId(), entry));
+
+        return merged.values().stream().sorted(order).limit(limit).toList();
+    }
+
+    /**
+     * The member's entries still waiting to be written or being written. Read before the database, an
+     * entry that is in neither by then was already written and the database read finds it.
+     */
+    private List<LedgerEntry> unwritten(String userID) {
+        synchronized (buffers) {
+            return Stream.concat(pending.stream(), writing.stream())
+                    .filter(entry -> entry.getTarget().equals(userID))
+                    .toList();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+}
@@ -1,37 +1,247 @@
 package dev.cortex.cortexbot.services;
 
 import dev.cortex.cortexbot.config.DiscordConfiguration;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.awt.*;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Posts to the logging channel. Lines and embeds are buffered and packed into as few messages
+ * as Discord allows, flushed every few seconds or as soon as a full message is waiting.
+ * Everything logged, and every points change, is also written to the local audit journal.
+ */
 @Service
 public class LoggingService {
 
+    private static final int MAX_EMBEDS = Message.MAX_EMBED_COUNT;
+    private static final int MAX_CONTENT = Message.MAX_CONTENT_LENGTH;
+
     private final DiscordConfiguration discordConfiguration;
+    private final RestActionScheduler restActionScheduler;
+    private final AuditJournal auditJournal;
+
+    //either String lines or MessageEmbeds, in the order they were logged
+    private final BlockingQueue<Object> buffer;
+    private final AtomicLong pendingLength = new AtomicLong();
+    private final AtomicLong droppedSinceFlush = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "log-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile TextChannel channel;
+
+    private final Counter dropped;
+    private final DistributionSummary entriesPerMessage;
 
     @Autowired
-    public LoggingService(DiscordConfiguration discordConfiguration) {
+    public LoggingService(DiscordConfiguration discordConfiguration,
+                          RestActionScheduler restActionScheduler,
+                          AuditJournal auditJournal,
+                          MeterRegistry meterRegistry,
+                          @Value("${cortex.logging.buffer-capacity:1000}") int capacity,
+                          @Value("${cortex.logging.flush-interval-seconds:3}") long flushIntervalSeconds) {
         this.discordConfiguration = discordConfiguration;
+        this.restActionScheduler = restActionScheduler;
+        this.auditJournal = auditJournal;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+
+        this.dropped = Counter.builder("cortex.logging.dropped")
+                .description("Log entries dropped because the buffer was full")
+                .register(meterRegistry);
+        this.entriesPerMessage = DistributionSummary.builder("cortex.logging.entries.per.message")
+                .description("Log lines and embeds packed into each logging channel message")
+                .register(meterRegistry);
+
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
     }
 
     public void log(String message){
-        TextChannel channel = DiscordBot.getApi().getGuildById("503656531665879063").getTextChannelById(discordConfiguration.getLoggingChannel());
-        channel.sendMessage(message + " [" + new Date() + "]").queue();
+        auditJournal.append(new AuditJournal.Entry(System.currentTimeMillis(), "log", null, null, null, null, message));
+
+        String line = message + " [" + new Date() + "]";
+        //a single line plus its newline can not be longer than a message
+        enqueue(line.length() >= MAX_CONTENT ? line.substring(0, MAX_CONTENT - 4) + "..." : line);
     }
 
     public void log(MessageEmbed embed){
-        TextChannel channel = DiscordBot.getApi().getGuildById(discordConfiguration.getGuildId())
-                .getTextChannelById(discordConfiguration.getLoggingChannel());
-        channel.sendMessageEmbeds(embed).queue();
+        auditJournal.append(new AuditJournal.Entry(System.currentTimeMillis(), "log", null, null, null, null, describe(embed)));
+        enqueue(embed);
+    }
+
+    /**
+     * Journals every points change with the ids of who was involved, which the channel messages only show as names.
+     */
+    @EventListener
+    public void onPointsChanged(PointsChangedEvent event) {
+        long now = System.currentTimeMillis();
+        PointsChangedEvent.Cause cause = event.cause();
+        String type = "points." + cause.action().name().toLowerCase();
+
+        for (PointsChangedEvent.Change change : event.changes()) {
+            auditJournal.append(new AuditJournal.Entry(now, type, change.userID(), cause.actorID(), change.delta(), cause.reason(), null));
+        }
+    }
+
+    private String describe(MessageEmbed embed) {
+        StringBuilder text = new StringBuilder();
+        if (embed.getTitle() != null) text.append(embed.getTitle());
+        if (embed.getAuthor() != null) text.append(" by ").append(embed.getAuthor().getName());
+        if (embed.getDescription() != null) text.append(": ").append(embed.getDescription());
+        for (MessageEmbed.Field field : embed.getFields()) {
+            text.append(" | ").append(field.getName()).append(": ").append(field.getValue());
+        }
+        return text.toString();
+    }
+
+    private void enqueue(Object entry) {
+
+        //when full, the oldest entries go first, the flush says how many were lost
+        while (!buffer.offer(entry)) {
+            Object oldest = buffer.poll();
+            if (oldest != null) {
+                pendingLength.addAndGet(-lengthOf(oldest));
+                droppedSinceFlush.incrementAndGet();
+                dropped.increment();
+            }
+        }
+
+        long length = pendingLength.addAndGet(lengthOf(entry));
+        boolean fullMessage = length >= MAX_CONTENT || buffer.size() >= MAX_EMBEDS;
+        if (fullMessage && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Packs everything buffered into messages and hands them to the scheduler.
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+
+        TextChannel channel = getChannel();
+        if (channel == null) {
+            //not connected yet, keep everything for the next flush
+            return;
+        }
+
+        List<Object> entries = new ArrayList<>();
+        buffer.drainTo(entries);
+        long lost = droppedSinceFlush.getAndSet(0);
+        if (entries.isEmpty() && lost == 0) {
+            return;
+        }
+        entries.forEach(entry -> pendingLength.addAndGet(-lengthOf(entry)));
+
+        if (lost > 0) {
+            entries.add(0, lost + " log entries were dropped because the logging buffer was full. [" + new Date() + "]");
+        }
+
+        StringBuilder content = new StringBuilder();
+        List<MessageEmbed> embeds = new ArrayList<>();
+        int embedsLength = 0;
+        int packed = 0;
+
+        for (Object entry : entries) {
+            if (entry instanceof MessageEmbed embed) {
+                if (embeds.size() == MAX_EMBEDS || embedsLength + embed.getLength() > MessageEmbed.EMBED_MAX_LENGTH_BOT) {
+                    send(channel, content, embeds, packed);
+                    content = new StringBuilder();
+                    embeds = new ArrayList<>();
+                    embedsLength = 0;
+                    packed = 0;
+                }
+                embeds.add(embed);
+                embedsLength += embed.getLength();
+            } else {
+                String line = (String) entry;
+                if (content.length() + line.length() + 1 > MAX_CONTENT) {
+                    send(channel, content, embeds, packed);
+                    content = new StringBuilder();
+                    embeds = new ArrayList<>();
+                    embedsLength = 0;
+                    packed = 0;
+                }
+                content.append(line).append("\n");
+            }
+            packed++;
+        }
+
+        send(channel, content, embeds, packed);
+    }
+
+    private void send(TextChannel channel, StringBuilder content, List<MessageEmbed> embeds, int packed) {
+        if (packed == 0) {
+            return;
+        }
+
+        MessageCreateBuilder message = new MessageCreateBuilder().setEmbeds(embeds);
+        if (!content.isEmpty()) {
+            message.setContent(content.toString());
+        }
+
+        entriesPerMessage.record(packed);
+        restActionScheduler.submit(RestActionScheduler.Priority.AUDIT_LOG, channel.sendMessage(message.build()));
+    }
+
+    //resolved once, JDA keeps the same channel object up to date
+    @Nullable
+    private TextChannel getChannel() {
+        if (channel == null) {
+            JDA api = DiscordBot.getApi();
+            Guild guild = api == null ? null : api.getGuildById(discordConfiguration.getGuildId());
+            channel = guild == null ? null : guild.getTextChannelById(discordConfiguration.getLoggingChannel());
+        }
+        return channel;
+    }
+
+    private int lengthOf(Object entry) {
+        return entry instanceof String line ? line.length() + 1 : 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to flush the logging channel buffer");
+            e.printStackTrace();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
     }
 
     public void logPointsGiven(String username, int points, String givenBy, @Nullable String reason){
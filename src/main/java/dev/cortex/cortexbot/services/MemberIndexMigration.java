@@ -0,0 +1,88 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.CortexMember;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Makes userID unique on the member collection. Racing upserts could create a second document for a new
+ * member before the index was unique, so those are merged into one first. Kept out of the @Indexed
+ * annotation because automatic index creation would fail on the old non unique index and on duplicates.
+ */
+@Service
+public class MemberIndexMigration {
+
+    private static final String INDEX_NAME = "userID";
+
+    private final MongoTemplate mongoTemplate;
+
+    public MemberIndexMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        IndexOperations indexes = mongoTemplate.indexOps(CortexMember.class);
+
+        for (IndexInfo index : indexes.getIndexInfo()) {
+            if (index.getName().equals(INDEX_NAME)) {
+                if (index.isUnique()) {
+                    return;
+                }
+                indexes.dropIndex(INDEX_NAME);
+            }
+        }
+
+        int merged = mergeDuplicates();
+        indexes.ensureIndex(new Index().on("userID", Sort.Direction.ASC).named(INDEX_NAME).unique());
+
+        System.out.println("Made member userID unique, merged " + merged + " duplicate member documents");
+    }
+
+    private int mergeDuplicates() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group("userID").count().as("documents"),
+                Aggregation.match(Criteria.where("documents").gt(1)));
+        List<Document> duplicated = mongoTemplate.aggregate(aggregation, CortexMember.class, Document.class).getMappedResults();
+
+        int merged = 0;
+        for (Document group : duplicated) {
+            List<CortexMember> copies = mongoTemplate.find(Query.query(Criteria.where("userID").is(group.getString("_id")))
+                    .with(Sort.by(Sort.Direction.ASC, "id")), CortexMember.class);
+
+            //the oldest one keeps its id, the counters of the others are added onto it
+            CortexMember kept = copies.get(0);
+            for (CortexMember copy : copies.subList(1, copies.size())) {
+                kept.addPoints(copy.getPoints());
+                kept.setMessagesSent(kept.getMessagesSent() + copy.getMessagesSent());
+                kept.setThanksReceived(kept.getThanksReceived() + copy.getThanksReceived());
+                kept.setThanksGiven(kept.getThanksGiven() + copy.getThanksGiven());
+                kept.setTipsReceived(kept.getTipsReceived() + copy.getTipsReceived());
+                kept.setTipsGiven(kept.getTipsGiven() + copy.getTipsGiven());
+                kept.setDmDigest(kept.isDmDigest() || copy.isDmDigest());
+                kept.setLevel(Math.max(kept.getLevel(), copy.getLevel()));
+                if (kept.getName() == null) {
+                    kept.setName(copy.getName());
+                }
+
+                mongoTemplate.remove(copy);
+                merged++;
+            }
+            mongoTemplate.save(kept);
+        }
+
+        return merged;
+    }
+
+}
@@ -0,0 +1,287 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.model.PendingDigest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
+import net.dv8tion.jda.api.requests.ErrorResponse;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends direct messages to members. Private channels are cached so they are only opened once,
+ * members with closed DMs are left alone for a while, and notifications to the same member
+ * within a few seconds go out as one message. Members can opt in to an hourly digest instead,
+ * digests still waiting when the bot shuts down are stored and picked up again on start.
+ */
+@Service
+public class NotificationService {
+
+    private static final int MAX_CACHED_CHANNELS = 10_000;
+
+    private final RestActionScheduler restActionScheduler;
+    private final MongoTemplate mongoTemplate;
+    private final long coalesceMillis;
+    private final long closedRetryMillis;
+
+    //user id to their private channel, least recently used goes first
+    private final Map<String, PrivateChannel> channels = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrivateChannel> eldest) {
+            return size() > MAX_CACHED_CHANNELS;
+        }
+    });
+
+    //user id to when we can try to DM them again
+    private final ConcurrentHashMap<String, Long> closed = new ConcurrentHashMap<>();
+
+    private final Set<String> digestMembers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Pending> digests = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "notification-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter sent;
+    private final Counter coalesced;
+    private final Counter skipped;
+
+    public NotificationService(RestActionScheduler restActionScheduler,
+                               MongoTemplate mongoTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${cortex.notifications.coalesce-seconds:10}") long coalesceSeconds,
+                               @Value("${cortex.notifications.closed-retry-hours:24}") long closedRetryHours) {
+        this.restActionScheduler = restActionScheduler;
+        this.mongoTemplate = mongoTemplate;
+        this.coalesceMillis = TimeUnit.SECONDS.toMillis(coalesceSeconds);
+        this.closedRetryMillis = TimeUnit.HOURS.toMillis(closedRetryHours);
+
+        this.sent = Counter.builder("cortex.notifications.sent")
+                .description("Direct messages sent")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("cortex.notifications.coalesced")
+                .description("Notifications merged into another direct message")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("cortex.notifications.skipped")
+                .description("Notifications not sent because the member has their DMs closed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void loadDigests() {
+        Query query = Query.query(Criteria.where("dmDigest").is(true));
+        query.fields().include("userID");
+        mongoTemplate.find(query, CortexMember.class).forEach(member -> digestMembers.add(member.getUserID()));
+
+        //what was waiting when the bot last shut down goes out with the next digest
+        for (PendingDigest stored : mongoTemplate.findAllAndRemove(new Query(), PendingDigest.class)) {
+            Pending waiting = new Pending();
+            stored.getMessages().forEach(waiting::add);
+            digests.merge(stored.getUserID(), waiting, Pending::absorb);
+        }
+    }
+
+    /**
+     * Queues a direct message to the user, merged with anything else sent to them in the next few seconds.
+     */
+    public void notify(User user, String message) {
+        String userID = user.getId();
+
+        Long retryAt = closed.get(userID);
+        if (retryAt != null) {
+            if (retryAt > System.currentTimeMillis()) {
+                skipped.increment();
+                return;
+            }
+            closed.remove(userID, retryAt);
+        }
+
+        if (digestMembers.contains(userID)) {
+            //add inside compute so it can not land in one the digest job just took
+            digests.compute(userID, (id, waiting) -> {
+                waiting = waiting == null ? new Pending() : waiting;
+                waiting.add(message);
+                return waiting;
+            });
+            return;
+        }
+
+        boolean[] first = new boolean[1];
+        pending.compute(userID, (id, waiting) -> {
+            if (waiting == null) {
+                waiting = new Pending();
+                first[0] = true;
+            }
+            waiting.add(message);
+            return waiting;
+        });
+
+        //only the first one in the window schedules the send, the rest ride along
+        if (first[0]) {
+            flusher.schedule(() -> send(userID, pending), coalesceMillis, TimeUnit.MILLISECONDS);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    public boolean isDigest(String userID) {
+        return digestMembers.contains(userID);
+    }
+
+    /**
+     * Switches a member between a DM per notification and one digest an hour.
+     *
+     * @return false if they are not in the database, the setting is kept on their member document
+     */
+    public boolean setDigest(String userID, boolean digest) {
+        //no upsert, a member made here would show up with 0 points in the rankings
+        Query query = Query.query(Criteria.where("userID").is(userID));
+        if (mongoTemplate.updateFirst(query, Update.update("dmDigest", digest), CortexMember.class).getMatchedCount() == 0) {
+            return false;
+        }
+
+        if (digest) {
+            digestMembers.add(userID);
+        } else {
+            digestMembers.remove(userID);
+            //don't sit on what they already have waiting
+            send(userID, digests);
+        }
+        return true;
+    }
+
+    @Scheduled(cron = "${cortex.notifications.digest-cron:0 0 * * * *}")
+    public void sendDigests() {
+        for (String userID : List.copyOf(digests.keySet())) {
+            send(userID, digests);
+        }
+        return true;
+    }
+
+    private void send(String userID, Map<String, Pending> from) {
+        //removed before packing, anything sent after this starts a new message
+        Pending notification = from.remove(userID);
+        if (notification == null) {
+            return;
+        }
+
+        for (String message : notification.pack()) {
+            restActionScheduler.submit(RestActionScheduler.Priority.DIRECT_MESSAGE, sendMessage(userID, message));
+            sent.increment();
+        }
+    }
+
+    private RestAction<?> sendMessage(String userID, String message) {
+        PrivateChannel channel = channels.get(userID);
+
+        //by id, a digest restored after a restart has no User to go with it
+        RestAction<Message> action = channel != null
+                ? channel.sendMessage(message)
+                : DiscordBot.getApi().openPrivateChannelById(userID).flatMap(opened -> {
+                    channels.put(userID, opened);
+                    return opened.sendMessage(message);
+                });
+
+        //closed DMs are expected, remember them instead of failing every time
+        return action.onErrorMap(ErrorResponse.CANNOT_SEND_TO_USER::test, error -> {
+            closed.put(userID, System.currentTimeMillis() + closedRetryMillis);
+            channels.remove(userID);
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        for (String userID : List.copyOf(pending.keySet())) {
+            send(userID, pending);
+        }
+
+        //digests wait for the hour, so they are kept for the next start instead of sent now
+        List<PendingDigest> stored = new ArrayList<>();
+        for (String userID : List.copyOf(digests.keySet())) {
+            Pending waiting = digests.remove(userID);
+            if (waiting != null) {
+                PendingDigest digest = new PendingDigest();
+                digest.setUserID(userID);
+                digest.setMessages(waiting.messages());
+                stored.add(digest);
+            }
+        }
+        if (!stored.isEmpty()) {
+            try {
+                stored.forEach(mongoTemplate::save);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to store " + stored.size() + " pending digests");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class Pending {
+
+        private final List<String> messages = new ArrayList<>();
+
+        private synchronized void add(String message) {
+            messages.add(message);
+        }
+
+        private synchronized List<String> messages() {
+            return new ArrayList<>(messages);
+        }
+
+        private Pending absorb(Pending other) {
+            other.messages().forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Joins everything into as few messages as fit Discord's length limit.
+         */
+        private synchronized List<String> pack() {
+            List<String> packed = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            for (String message : messages) {
+                if (!current.isEmpty() && current.length() + message.length() + 1 > Message.MAX_CONTENT_LENGTH) {
+                    packed.add(current.toString());
+                    current = new StringBuilder();
+                }
+                if (!current.isEmpty()) {
+                    current.append("\n");
+                }
+                current.append(message, 0, Math.min(message.length(), Message.MAX_CONTENT_LENGTH));
+            }
+            if (!current.isEmpty()) {
+                packed.add(current.toString());
+            }
+            return packed;
+        }
+
+    }
+
+}
@@ -1,15 +1,44 @@
 package dev.cortex.cortexbot.services;
 
+import dev.cortex.cortexbot.events.PointsChangedEvent;
 import dev.cortex.cortexbot.repositories.CortexMemberRepository;
 import dev.cortex.cortexbot.model.CortexMember;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class PointsService {
 
+    private final CortexMemberRepository cortexMemberRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
     @Autowired
-    CortexMemberRepository cortexMemberRepository;
+    public PointsService(CortexMemberRepository cortexMemberRepository, MongoTemplate mongoTemplate, ApplicationEventPublisher eventPublisher) {
+        this.cortexMemberRepository = cortexMemberRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public boolean exists(String userID) {
+        return mongoTemplate.exists(Query.query(Criteria.where("userID").is(userID)), CortexMember.class);
+    }
 
     public long getPoints(String userID){
 
@@ -23,4 +52,192 @@ public class PointsService {
 
     }
 
+    /**
+     * Gets the members with the most points, highest first, using the points index.
+     * Only userID and points are loaded.
+     */
+    public List<CortexMember> getTopMembers(int limit) {
+        return cortexMemberRepository.findLeaderboard(PageRequest.of(0, limit));
+    }
+
+    /**
+     * Gets the members ranked directly below the given one, highest first. Seeks on the
+     * (points, _id) index, so the cost does not grow with how far down the leaderboard it is.
+     */
+    public List<CortexMember> getMembersAfter(long points, String id, int limit) {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("points").lt(points),
+                Criteria.where("points").is(points).and("id").lt(id)))
+                .with(Sort.by(Sort.Direction.DESC, "points", "id"))
+                .limit(limit);
+        query.fields().include("userID").include("points");
+
+        return mongoTemplate.find(query, CortexMember.class);
+    }
+
+    /**
+     * Gets the members ranked directly above the given one, closest first.
+     */
+    public List<CortexMember> getMembersBefore(long points, String id, int limit) {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("points").gt(points),
+                Criteria.where("points").is(points).and("id").gt(id)))
+                .with(Sort.by(Sort.Direction.ASC, "points", "id"))
+                .limit(limit);
+        query.fields().include("userID").include("points");
+
+        return mongoTemplate.find(query, CortexMember.class);
+    }
+
+    public CortexMember addPoints(String userID, long amount) {
+        return addPoints(userID, amount, PointsChangedEvent.Cause.ADJUSTMENT);
+    }
+
+    /**
+     * Atomically adds points to a member.
+     *
+     * @return the member after the update with only userID and points loaded, or null if they are not in the database
+     */
+    public CortexMember addPoints(String userID, long amount, PointsChangedEvent.Cause cause) {
+        CortexMember before = modify(userID, versioned(new Update().inc("points", amount)));
+
+        if (before == null) {
+            return null;
+        }
+
+        return publish(cause, changed(userID, before, before.getPoints() + amount));
+    }
+
+    public CortexMember takePoints(String userID, long amount) {
+        return takePoints(userID, amount, PointsChangedEvent.Cause.ADJUSTMENT);
+    }
+
+    /**
+     * Atomically takes points from a member, never going below 0.
+     *
+     * @return the member after the update, or null if they are not in the database
+     */
+    public CortexMember takePoints(String userID, long amount, PointsChangedEvent.Cause cause) {
+        AggregationUpdate update = AggregationUpdate.update()
+                .set("points").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf("points").greaterThanEqualToValue(amount))
+                        .thenValueOf(ArithmeticOperators.valueOf("points").subtract(amount))
+                        .otherwise(0L))
+                .set("pointsVersion").toValue(ArithmeticOperators.valueOf(ConditionalOperators.ifNull("pointsVersion").then(0L)).add(1));
+        CortexMember before = modify(userID, update);
+
+        if (before == null) {
+            return null;
+        }
+
+        return publish(cause, changed(userID, before, before.getPoints() >= amount ? before.getPoints() - amount : 0));
+    }
+
+    public CortexMember setPoints(String userID, long points) {
+        return setPoints(userID, points, PointsChangedEvent.Cause.ADJUSTMENT);
+    }
+
+    /**
+     * Atomically sets the points of a member.
+     *
+     * @return the member after the update with only userID and points loaded, or null if they are not in the database
+     */
+    public CortexMember setPoints(String userID, long points, PointsChangedEvent.Cause cause) {
+        long total = Math.max(points, 0);
+        CortexMember before = modify(userID, versioned(new Update().set("points", total)));
+
+        if (before == null) {
+            return null;
+        }
+
+        return publish(cause, changed(userID, before, total));
+    }
+
+    public Transfer transfer(String fromUserID, String toUserID, long amount) {
+        return transfer(fromUserID, toUserID, amount, PointsChangedEvent.Cause.of(PointsChangedEvent.Action.PAY, fromUserID));
+    }
+
+    /**
+     * Moves points from one member to another. The debit only matches if the payer has enough points,
+     * so two transfers racing each other can never overdraw them. If the credit fails the debit is undone.
+     *
+     * The recipient has to be in the database already, check with exists first.
+     *
+     * @return both members after the transfer, or null if the payer does not have enough points
+     */
+    public Transfer transfer(String fromUserID, String toUserID, long amount, PointsChangedEvent.Cause cause) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+
+        Query debitQuery = Query.query(Criteria.where("userID").is(fromUserID).and("points").gte(amount));
+        CortexMember payerBefore = modify(debitQuery, versioned(new Update().inc("points", -amount)));
+
+        if (payerBefore == null) {
+            return null;
+        }
+
+        Changed payer = changed(fromUserID, payerBefore, payerBefore.getPoints() - amount);
+        Changed recipient;
+
+        try {
+            CortexMember recipientBefore = modify(toUserID, versioned(new Update().inc("points", amount)));
+            if (recipientBefore == null) {
+                throw new IllegalStateException("Transfer recipient " + toUserID + " is not in the database");
+            }
+            recipient = changed(toUserID, recipientBefore, recipientBefore.getPoints() + amount);
+        } catch (RuntimeException e) {
+            //give the payer their points back so none are lost
+            modify(fromUserID, versioned(new Update().inc("points", amount)));
+            throw e;
+        }
+
+        //both sides in one event, so listeners see the transfer as a whole
+        eventPublisher.publishEvent(new PointsChangedEvent(cause, List.of(payer.change(), recipient.change())));
+        return new Transfer(payer.member(), recipient.member());
+    }
+
+    public record Transfer(CortexMember payer, CortexMember recipient) {
+    }
+
+    private static Update versioned(Update update) {
+        return update.inc("pointsVersion", 1);
+    }
+
+    private CortexMember modify(String userID, UpdateDefinition update) {
+        return modify(Query.query(Criteria.where("userID").is(userID)), update);
+    }
+
+    //single round trip: update the document and get the old points back in the same command,
+    //which is null if nothing matched. The new total follows from the update that was applied
+    private CortexMember modify(Query query, UpdateDefinition update) {
+        query.fields().include("userID").include("points").include("pointsVersion");
+
+        return mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(false), CortexMember.class);
+    }
+
+    private long pointsOf(@Nullable CortexMember member) {
+        return member == null ? 0 : member.getPoints();
+    }
+
+    private Changed changed(String userID, @Nullable CortexMember before, long total) {
+        long previous = pointsOf(before);
+
+        CortexMember member = before == null ? new CortexMember() : before;
+        member.setUserID(userID);
+        member.setPoints(total);
+        member.setPointsVersion(member.getPointsVersion() + 1);
+
+        return new Changed(member, new PointsChangedEvent.Change(userID, total - previous, total, member.getPointsVersion()));
+    }
+
+    private CortexMember publish(PointsChangedEvent.Cause cause, Changed changed) {
+        eventPublisher.publishEvent(new PointsChangedEvent(cause, List.of(changed.change())));
+        return changed.member();
+    }
+
+    private record Changed(CortexMember member, PointsChangedEvent.Change change) {
+    }
+
 }
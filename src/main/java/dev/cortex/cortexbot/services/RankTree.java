@@ -0,0 +1,190 @@
+package dev.cortex.cortexbot.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Order statistic tree (a treap with subtree sizes) of members ordered by points, highest first,
+ * with ties broken by user ID. Insert, remove, rank and select are all O(log n) expected.
+ * Not thread safe, the RankingService guards it.
+ */
+class RankTree {
+
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+
+    int size() {
+        return size(root);
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    void insert(String userID, long points) {
+        root = insert(root, new Node(userID, points, random.nextInt()));
+    }
+
+    void remove(String userID, long points) {
+        root = remove(root, userID, points);
+    }
+
+    /**
+     * @return the 0 based position of the member, or -1 if they are not in the tree
+     */
+    int indexOf(String userID, long points) {
+        int index = 0;
+        Node node = root;
+
+        while (node != null) {
+            int compared = compare(userID, points, node);
+            if (compared == 0) {
+                return index + size(node.left);
+            } else if (compared < 0) {
+                node = node.left;
+            } else {
+                index += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets up to count members starting at the 0 based position from, in order.
+     */
+    List<RankingService.Entry> range(int from, int count) {
+        List<RankingService.Entry> entries = new ArrayList<>(Math.max(Math.min(count, size() - from), 0));
+        collect(root, Math.max(from, 0), from + count, 0, entries);
+        return entries;
+    }
+
+    //in order walk that skips whole subtrees outside [from, to)
+    private void collect(Node node, int from, int to, int offset, List<RankingService.Entry> entries) {
+        if (node == null || from >= to) {
+            return;
+        }
+
+        int index = offset + size(node.left);
+        if (from < index) {
+            collect(node.left, from, to, offset, entries);
+        }
+        if (index >= from && index < to) {
+            entries.add(new RankingService.Entry(node.userID, node.points, index + 1));
+        }
+        if (to > index + 1) {
+            collect(node.right, from, to, index + 1, entries);
+        }
+    }
+
+    private Node insert(Node node, Node item) {
+        if (node == null) {
+            return item;
+        }
+
+        if (item.priority > node.priority) {
+            Node[] parts = split(node, item.userID, item.points);
+            item.left = parts[0];
+            item.right = parts[1];
+            return update(item);
+        }
+
+        if (compare(item.userID, item.points, node) < 0) {
+            node.left = insert(node.left, item);
+        } else {
+            node.right = insert(node.right, item);
+        }
+        return update(node);
+    }
+
+    private Node remove(Node node, String userID, long points) {
+        if (node == null) {
+            return null;
+        }
+
+        int compared = compare(userID, points, node);
+        if (compared == 0) {
+            return merge(node.left, node.right);
+        } else if (compared < 0) {
+            node.left = remove(node.left, userID, points);
+        } else {
+            node.right = remove(node.right, userID, points);
+        }
+        return update(node);
+    }
+
+    //splits into the nodes ordered before the key and the nodes ordered at or after it
+    private Node[] split(Node node, String userID, long points) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        if (compare(userID, points, node) > 0) {
+            Node[] parts = split(node.right, userID, points);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        } else {
+            Node[] parts = split(node.left, userID, points);
+            node.left = parts[1];
+            parts[1] = update(node);
+            return parts;
+        }
+    }
+
+    //every node in left is ordered before every node in right
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        } else {
+            right.left = merge(left, right.left);
+            return update(right);
+        }
+    }
+
+    //old member documents can be missing their userID, those sort first among equal points
+    private static final Comparator<String> USER_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private static int compare(String userID, long points, Node node) {
+        int compared = Long.compare(node.points, points);
+        return compared != 0 ? compared : USER_ORDER.compare(userID, node.userID);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        return node;
+    }
+
+    private static class Node {
+
+        private final String userID;
+        private final long points;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(String userID, long points, int priority) {
+            this.userID = userID;
+            this.points = points;
+            this.priority = priority;
+        }
+
+    }
+
+}
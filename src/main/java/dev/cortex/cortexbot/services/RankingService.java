@@ -0,0 +1,183 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import dev.cortex.cortexbot.model.CortexMember;
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every member's points in memory, ordered, so ranks and leaderboard slices can be
+ * answered in O(log n) instead of sorting the member collection. Seeded from the database
+ * at startup and kept up to date from PointsChangedEvents.
+ * Events from concurrent updates can arrive in any order, so every balance carries the member's
+ * pointsVersion and one older than what is already applied is dropped.
+ */
+@Service
+public class RankingService {
+
+    public record Entry(String userID, long points, int rank) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    private final RankTree tree = new RankTree();
+    private final Map<String, Long> points = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public RankingService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Rebuilds the rankings from the member collection, streaming only userID and points.
+     */
+    @PostConstruct
+    public void reload() {
+        Query query = new Query();
+        query.fields().include("userID").include("points").include("pointsVersion");
+
+        lock.writeLock().lock();
+        try (Stream<CortexMember> members = mongoTemplate.stream(query, CortexMember.class)) {
+            tree.clear();
+            points.clear();
+            versions.clear();
+            members.forEach(member -> set(member.getUserID(), member.getPoints(), member.getPointsVersion()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        System.out.println("Loaded " + points.size() + " members into the rankings");
+    }
+
+    //runs before other listeners so they can read the new points from here
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onPointsChanged(PointsChangedEvent event) {
+
+        //message activity only knows its deltas, those members are read back, before taking the lock
+        List<String> unknown = event.changes().stream()
+                .filter(change -> change.balance() == null)
+                .map(PointsChangedEvent.Change::userID)
+                .distinct()
+                .toList();
+        List<CortexMember> reread = List.of();
+        if (!unknown.isEmpty()) {
+            Query query = Query.query(Criteria.where("userID").in(unknown));
+            query.fields().include("userID").include("points").include("pointsVersion");
+            reread = mongoTemplate.find(query, CortexMember.class);
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (PointsChangedEvent.Change change : event.changes()) {
+                if (change.balance() != null) {
+                    set(change.userID(), change.balance(), change.version());
+                }
+            }
+            for (CortexMember member : reread) {
+                set(member.getUserID(), member.getPoints(), member.getPointsVersion());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the 1 based rank of the member, or -1 if they have no points record
+     */
+    public int getRank(String userID) {
+        lock.readLock().lock();
+        try {
+            Long current = points.get(userID);
+            return current == null ? -1 : tree.indexOf(userID, current) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the points of the member, or -1 if they have no points record
+     */
+    public long getPoints(String userID) {
+        lock.readLock().lock();
+        try {
+            return points.getOrDefault(userID, -1L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Entry> getTop(int limit) {
+        return getRange(0, limit);
+    }
+
+    /**
+     * Gets up to count entries starting at the 0 based position from.
+     */
+    public List<Entry> getRange(int from, int count) {
+        lock.readLock().lock();
+        try {
+            return tree.range(from, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the member along with up to radius members ranked directly above and below them.
+     * Empty if the member has no points record.
+     */
+    public List<Entry> getAround(String userID, int radius) {
+        lock.readLock().lock();
+        try {
+            Long current = points.get(userID);
+            if (current == null) {
+                return List.of();
+            }
+
+            int index = tree.indexOf(userID, current);
+            int from = Math.max(index - radius, 0);
+            return tree.range(from, index - from + radius + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //caller must hold the write lock, a version older than the one applied is a stale update and ignored
+    private void set(String userID, long total, long version) {
+        Long applied = versions.get(userID);
+        if (applied != null && version < applied) {
+            return;
+        }
+        versions.put(userID, version);
+
+        Long previous = points.put(userID, total);
+        if (previous != null) {
+            tree.remove(userID, previous);
+        }
+        tree.insert(userID, total);
+    }
+
+}
@@ -0,0 +1,176 @@
+package dev.cortex.cortexbot.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends Discord side effects in priority order, with only a few in flight at once, so a big
+ * role sync or challenge lock cannot bury user facing replies in JDA's rate limit buckets.
+ * Actions queued under the same key are coalesced, the newest one replaces the one waiting.
+ * Interaction replies don't go through here, they have a 3 second deadline and are sent on
+ * the interaction's own webhook, which none of the actions here share a bucket with.
+ */
+@Service
+public class RestActionScheduler {
+
+    //declared highest priority first
+    public enum Priority {
+        MODERATION,
+        DIRECT_MESSAGE,
+        AUDIT_LOG,
+        ROLE_SYNC
+    }
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final Map<String, Task> pendingByKey = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Semaphore inFlight;
+    private final Thread dispatcher;
+
+    private final Map<Priority, Timer> latency = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> failures = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> coalesced = new EnumMap<>(Priority.class);
+
+    public RestActionScheduler(MeterRegistry meterRegistry,
+                               @Value("${cortex.rest.max-in-flight:4}") int maxInFlight) {
+        this.inFlight = new Semaphore(Math.max(maxInFlight, 1));
+
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+
+            //the timer count doubles as throughput
+            latency.put(priority, Timer.builder("cortex.rest.latency")
+                    .description("Time from queueing a Discord action to its response")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            failures.put(priority, Counter.builder("cortex.rest.failures")
+                    .description("Discord actions that failed")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            coalesced.put(priority, Counter.builder("cortex.rest.coalesced")
+                    .description("Discord actions replaced by a newer action with the same key before being sent")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            Gauge.builder("cortex.rest.queued", queue, q -> q.stream().filter(task -> task.priority == priority).count())
+                    .description("Discord actions waiting to be sent")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+
+        this.dispatcher = new Thread(this::dispatch, "rest-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public void submit(Priority priority, RestAction<?> action) {
+        submit(priority, null, action);
+    }
+
+    /**
+     * Queues an action. If an action with the same key is still waiting it is replaced by this one,
+     * so for example removing a role replaces a queued add of the same role.
+     */
+    public synchronized void submit(Priority priority, @Nullable String key, RestAction<?> action) {
+        if (key != null) {
+            Task waiting = pendingByKey.get(key);
+            if (waiting != null) {
+                coalesced.get(waiting.priority).increment();
+
+                //the replacement goes out at its own priority, so unless that is the same it is queued anew,
+                //if the dispatcher already took the waiting one it is about to be sent and can just be swapped
+                if (waiting.priority == priority || !queue.remove(waiting)) {
+                    waiting.action = action;
+                    return;
+                }
+            }
+        }
+
+        Task task = new Task(priority, key, action, sequence.incrementAndGet());
+        if (key != null) {
+            pendingByKey.put(key, task);
+        }
+        queue.add(task);
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                inFlight.acquire();
+                Task task = queue.take();
+
+                RestAction<?> action;
+                synchronized (this) {
+                    if (task.key != null) {
+                        pendingByKey.remove(task.key, task);
+                    }
+                    action = task.action;
+                }
+
+                send(task.priority, action, task.queuedAt);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                //a bad action must not kill the dispatcher
+                inFlight.release();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void send(Priority priority, RestAction<?> action, long queuedAt) {
+        action.queue(success -> {
+            inFlight.release();
+            latency.get(priority).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        }, failure -> {
+            inFlight.release();
+            latency.get(priority).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            failures.get(priority).increment();
+            System.out.println("Discord " + priority.name().toLowerCase() + " action failed: " + failure.getMessage());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.interrupt();
+    }
+
+    private static class Task implements Comparable<Task> {
+
+        private final Priority priority;
+        private final String key;
+        private final long sequence;
+        private final long queuedAt = System.nanoTime();
+        private RestAction<?> action;
+
+        private Task(Priority priority, @Nullable String key, RestAction<?> action, long sequence) {
+            this.priority = priority;
+            this.key = key;
+            this.action = action;
+            this.sequence = sequence;
+        }
+
+        //by priority, then first in first out
+        @Override
+        public int compareTo(Task other) {
+            int compared = priority.compareTo(other.priority);
+            return compared != 0 ? compared : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+}
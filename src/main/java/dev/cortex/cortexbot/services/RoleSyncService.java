@@ -0,0 +1,230 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.config.DiscordConfiguration;
+import dev.cortex.cortexbot.events.PointsChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.UserSnowflake;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Gives the Regular role to the top 20 on the leaderboard and the Veteran role to the top 5,
+ * by diffing who should have each role against who has it now and only sending the difference.
+ * Runs whenever a points change moves someone across the rank 20 or rank 5 boundary, with a
+ * low frequency scheduled run as a safety net.
+ */
+@Service
+public class RoleSyncService {
+
+    public static final int REGULAR_RANKS = 20;
+    public static final int VETERAN_RANKS = 5;
+
+    private final RankingService rankingService;
+    private final RestActionScheduler restActionScheduler;
+    private final DiscordConfiguration discordConfiguration;
+    private final MeterRegistry meterRegistry;
+    private final Timer reconcileTimer;
+    private final Counter crossings;
+    private final long reconcileDelaySeconds;
+
+    //who held each tier as of the last reconciliation
+    private volatile Set<String> regulars = Set.of();
+    private volatile Set<String> veterans = Set.of();
+
+    private final AtomicBoolean reconcileQueued = new AtomicBoolean();
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "role-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoleSyncService(RankingService rankingService,
+                           RestActionScheduler restActionScheduler,
+                           DiscordConfiguration discordConfiguration,
+                           MeterRegistry meterRegistry,
+                           @Value("${cortex.roles.reconcile-delay-seconds:5}") long reconcileDelaySeconds) {
+        this.rankingService = rankingService;
+        this.restActionScheduler = restActionScheduler;
+        this.discordConfiguration = discordConfiguration;
+        this.meterRegistry = meterRegistry;
+        this.reconcileDelaySeconds = reconcileDelaySeconds;
+        this.reconcileTimer = Timer.builder("cortex.roles.reconcile")
+                .description("Time taken to reconcile the Regular and Veteran roles")
+                .register(meterRegistry);
+        this.crossings = Counter.builder("cortex.roles.boundary.crossings")
+                .description("Points changes that moved a member across a role tier boundary")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        reconciler.execute(this::reconcileQuietly);
+    }
+
+    /**
+     * Queues a reconciliation if any of the changes moved someone into or out of a tier.
+     * The RankingService handles the event first, so its rank already includes the change and
+     * breaks ties the same way the leaderboard does. Changes that keep everyone's tier cost a
+     * rank lookup and two set lookups.
+     */
+    @EventListener
+    public void onPointsChanged(PointsChangedEvent event) {
+        for (PointsChangedEvent.Change change : event.changes()) {
+            int rank = rankingService.getRank(change.userID());
+
+            if (crosses(regulars, REGULAR_RANKS, change.userID(), rank)
+                    || crosses(veterans, VETERAN_RANKS, change.userID(), rank)) {
+                crossings.increment();
+
+                //wait a little so a burst of changes is handled by one reconciliation
+                if (reconcileQueued.compareAndSet(false, true)) {
+                    reconciler.schedule(this::reconcileQuietly, reconcileDelaySeconds, TimeUnit.SECONDS);
+                }
+                return;
+            }
+        }
+    }
+
+    //a rank of -1 means no points record, that is outside every tier
+    private boolean crosses(Set<String> holders, int ranks, String userID, int rank) {
+        boolean inTier = rank > 0 && rank <= ranks;
+        return holders.contains(userID) != inTier;
+    }
+
+    /**
+     * Safety net in case a change was missed, by default every 6 hours
+     */
+    @Scheduled(cron = "${cortex.roles.safety-net-cron:0 0 */6 * * *}")
+    public void scheduledReconcile() {
+        reconcileQuietly();
+    }
+
+    private void reconcileQuietly() {
+        reconcileQueued.set(false);
+        try {
+            reconcileRoles();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to reconcile the Regular and Veteran roles");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Brings the Regular and Veteran roles in line with the leaderboard
+     */
+    public synchronized void reconcileRoles() {
+
+        if (DiscordBot.getApi() == null) {
+            return;
+        }
+
+        Guild guild = DiscordBot.getApi().getGuildById(discordConfiguration.getGuildId());
+        if (guild == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        //read from the rankings so ties are broken the same way as in onPointsChanged,
+        //the veterans are the first 5 of the regulars
+        List<String> topIds = rankingService.getTop(REGULAR_RANKS).stream()
+                .map(RankingService.Entry::userID)
+                .collect(Collectors.toList());
+
+        Set<String> topRegulars = new HashSet<>(topIds);
+        Set<String> topVeterans = new HashSet<>(topIds.subList(0, Math.min(topIds.size(), VETERAN_RANKS)));
+
+        int changes = reconcile(guild, discordConfiguration.getRegularRoleId(), "regular", topRegulars);
+        changes += reconcile(guild, discordConfiguration.getVeteranRoleId(), "veteran", topVeterans);
+
+        regulars = topRegulars;
+        veterans = topVeterans;
+
+        long took = System.nanoTime() - start;
+        reconcileTimer.record(took, TimeUnit.NANOSECONDS);
+
+        if (changes > 0) {
+            System.out.println("Role reconciliation made " + changes + " change(s) in " + TimeUnit.NANOSECONDS.toMillis(took) + "ms");
+        }
+    }
+
+    private int reconcile(Guild guild, long roleId, String tier, Set<String> wanted) {
+
+        Role role = guild.getRoleById(roleId);
+        if (role == null) {
+            System.out.println("Could not find the " + tier + " role " + roleId);
+            return 0;
+        }
+
+        Set<String> holders = guild.getMembersWithRoles(role)
+                .stream()
+                .map(Member::getId)
+                .collect(Collectors.toSet());
+
+        int changes = 0;
+
+        for (String holder : holders) {
+            if (!wanted.contains(holder)) {
+                restActionScheduler.submit(RestActionScheduler.Priority.ROLE_SYNC, roleKey(holder, role),
+                        guild.removeRoleFromMember(UserSnowflake.fromId(holder), role));
+                changes++;
+                count(tier, "remove");
+            }
+        }
+
+        for (String userID : wanted) {
+            if (holders.contains(userID)) {
+                continue;
+            }
+
+            //they may have left the server
+            Member member = guild.getMemberById(userID);
+            if (member != null) {
+                restActionScheduler.submit(RestActionScheduler.Priority.ROLE_SYNC, roleKey(userID, role),
+                        guild.addRoleToMember(member, role));
+                changes++;
+                count(tier, "add");
+            }
+        }
+
+        return changes;
+    }
+
+    //adds and removes of the same role for the same member share a key, so only the latest is sent
+    public static String roleKey(String userID, Role role) {
+        return "role:" + userID + ":" + role.getId();
+    }
+
+    private void count(String tier, String action) {
+        Counter.builder("cortex.roles.changes")
+                .description("Role changes sent by the role reconciliation")
+                .tag("role", tier)
+                .tag("action", action)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+}
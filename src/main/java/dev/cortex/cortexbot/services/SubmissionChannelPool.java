@@ -0,0 +1,171 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.config.DiscordConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.Permission;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.channel.concrete.Category;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional pool of hidden submission channels made ahead of time. When a challenge launches, a lot of
+ * members click Submit Solution at once, and creating a channel for each of them runs into the guild's
+ * channel create rate limit. A pooled channel only needs a rename and the member's override.
+ * The pool is refilled one channel at a time, slow enough to stay clear of the rate limit.
+ * Off when the size is 0. Mind that a category holds at most 50 channels, submissions included.
+ */
+@Service
+public class SubmissionChannelPool {
+
+    private static final String CATEGORY_ID = "803777453914456104";
+    private static final String STAFF_ROLE_ID = "786974475354505248";
+
+    //how pooled channels are recognised after a restart
+    private static final String POOL_CHANNEL_NAME = "pooled-submission";
+
+    private final DiscordConfiguration discordConfiguration;
+    private final int size;
+    private final long refillSeconds;
+
+    private final Queue<Long> channels = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService refiller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "submission-pool-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public SubmissionChannelPool(DiscordConfiguration discordConfiguration,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${cortex.challenges.pool-size:0}") int size,
+                                 @Value("${cortex.challenges.pool-refill-seconds:10}") long refillSeconds) {
+        this.discordConfiguration = discordConfiguration;
+        this.size = size;
+        this.refillSeconds = refillSeconds;
+
+        Gauge.builder("cortex.challenges.pool.size", channels, Queue::size)
+                .description("Hidden submission channels ready to be handed out")
+                .register(meterRegistry);
+        this.hits = Counter.builder("cortex.challenges.pool.takes")
+                .description("Submission channels taken from the pool")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cortex.challenges.pool.takes")
+                .description("Submission channels that had to be created because the pool was empty")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (size <= 0) {
+            return;
+        }
+
+        //pick up what the last run left behind instead of making more
+        Category category = getGuild().getCategoryById(CATEGORY_ID);
+        if (category != null) {
+            category.getTextChannels().stream()
+                    .filter(channel -> channel.getName().equals(POOL_CHANNEL_NAME))
+                    .forEach(channel -> channels.add(channel.getIdLong()));
+        }
+
+        refiller.scheduleWithFixedDelay(this::refill, 0, refillSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Hands out a pooled channel, it is still hidden and named for the pool.
+     *
+     * @return null if the pool is off or empty, create a channel as usual then
+     */
+    @Nullable
+    public TextChannel take() {
+        if (size <= 0) {
+            return null;
+        }
+
+        Long channelID;
+        while ((channelID = channels.poll()) != null) {
+            //someone may have deleted it by hand
+            TextChannel channel = getGuild().getTextChannelById(channelID);
+            if (channel != null) {
+                hits.increment();
+                return channel;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Puts back a channel from take() that could not be handed to the member. It goes back in the pool
+     * if it still looks like a pooled channel, otherwise it is deleted so nobody is left with access to it.
+     */
+    public void release(TextChannel channel) {
+        if (channel.getName().equals(POOL_CHANNEL_NAME) && channel.getMemberPermissionOverrides().isEmpty() && channels.size() < size) {
+            channels.add(channel.getIdLong());
+            return;
+        }
+
+        channel.delete().queue(null, error -> {
+            System.out.println("Failed to delete a submission channel taken from the pool");
+            error.printStackTrace();
+        });
+    }
+
+    /**
+     * Adds one channel per run, the fixed delay between runs is what keeps it under the rate limit.
+     */
+    private void refill() {
+        if (channels.size() >= size) {
+            return;
+        }
+
+        try {
+            Guild guild = getGuild();
+            Role staff = guild.getRoleById(STAFF_ROLE_ID);
+            if (staff == null) {
+                return;
+            }
+
+            TextChannel channel = guild.createTextChannel(POOL_CHANNEL_NAME, guild.getCategoryById(CATEGORY_ID))
+                    .addRolePermissionOverride(guild.getPublicRole().getIdLong(), null, List.of(Permission.VIEW_CHANNEL))
+                    .addRolePermissionOverride(staff.getIdLong(), List.of(Permission.VIEW_CHANNEL), null)
+                    .complete();
+            channels.add(channel.getIdLong());
+        } catch (RuntimeException e) {
+            System.out.println("Failed to add a channel to the submission pool");
+            e.printStackTrace();
+        }
+    }
+
+    private Guild getGuild() {
+        return DiscordBot.getApi().getGuildById(discordConfiguration.getGuildId());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+}
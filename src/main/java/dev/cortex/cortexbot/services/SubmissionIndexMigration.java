@@ -0,0 +1,86 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.challenges.ChallengeGrade;
+import dev.cortex.cortexbot.model.challenges.Submission;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Makes (userid, challengeId) unique on the submission collection. The old check-then-create could store
+ * two submissions for one member when they clicked twice, so the extras are removed first. Kept out of a
+ * @CompoundIndex for the same reason as MemberIndexMigration, automatic index creation would fail on duplicates.
+ */
+@Service
+public class SubmissionIndexMigration {
+
+    private static final String INDEX_NAME = "userid_challengeId";
+
+    private final MongoTemplate mongoTemplate;
+
+    public SubmissionIndexMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        IndexOperations indexes = mongoTemplate.indexOps(Submission.class);
+
+        for (IndexInfo index : indexes.getIndexInfo()) {
+            if (index.getName().equals(INDEX_NAME)) {
+                if (index.isUnique()) {
+                    return;
+                }
+                indexes.dropIndex(INDEX_NAME);
+            }
+        }
+
+        int removed = removeDuplicates();
+        indexes.ensureIndex(new Index().on("userid", Sort.Direction.ASC).on("challengeId", Sort.Direction.ASC).named(INDEX_NAME).unique());
+
+        System.out.println("Made submissions unique per member and challenge, removed " + removed + " duplicate submissions");
+    }
+
+    private int removeDuplicates() {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group("userid", "challengeId").count().as("documents"),
+                Aggregation.match(Criteria.where("documents").gt(1)));
+        List<Document> duplicated = mongoTemplate.aggregate(aggregation, Submission.class, Document.class).getMappedResults();
+
+        //keep the one staff already graded, then the one that got a channel, then the first one made
+        Comparator<Submission> keepFirst = Comparator
+                .comparing((Submission submission) -> submission.getStatus() == null || submission.getStatus() == ChallengeGrade.UNGRADED)
+                .thenComparing(submission -> submission.getChannel() == null)
+                .thenComparingLong(Submission::getDate);
+
+        int removed = 0;
+        for (Document group : duplicated) {
+            Document key = group.get("_id", Document.class);
+            List<Submission> copies = mongoTemplate.find(Query.query(Criteria.where("userid").is(key.getString("userid"))
+                    .and("challengeId").is(key.getString("challengeId"))), Submission.class);
+            copies.sort(keepFirst);
+
+            for (Submission copy : copies.subList(1, copies.size())) {
+                //the channel itself is left for staff to delete, it may still hold a solution
+                System.out.println("Removing duplicate submission of " + copy.getUserid() + " for challenge " + copy.getChallengeId()
+                        + (copy.getChannel() == null ? "" : ", its channel " + copy.getChannel() + " is no longer tracked"));
+                mongoTemplate.remove(copy);
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+}
@@ -0,0 +1,326 @@
+package dev.cortex.cortexbot.services;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import dev.cortex.cortexbot.config.DiscordConfiguration;
+import dev.cortex.cortexbot.model.JobCheckpoint;
+import dev.cortex.cortexbot.model.Suggestion;
+import jakarta.annotation.PreDestroy;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the suggestions channel in the database so the top suggestions are one indexed query.
+ * Votes are counted from reaction events in memory and written behind, and suggestions posted
+ * before this existed are picked up by a backfill that can resume after a restart.
+ */
+@Service
+public class SuggestionService {
+
+    private static final String BACKFILL_JOB = "suggestions-backfill";
+    private static final int PAGE_SIZE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final DiscordConfiguration discordConfiguration;
+
+    //message id to the votes counted since the last flush
+    private final ConcurrentHashMap<String, Votes> pendingVotes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "suggestion-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService backfiller = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "suggestion-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SuggestionService(MongoTemplate mongoTemplate,
+                             DiscordConfiguration discordConfiguration,
+                             @Value("${cortex.suggestions.flush-interval-seconds:30}") long flushIntervalSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.discordConfiguration = discordConfiguration;
+
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stores a suggestion the bot just reposted.
+     */
+    public void create(Message repost, User author, String content) {
+        Suggestion suggestion = new Suggestion();
+        suggestion.setId(repost.getId());
+        suggestion.setAuthorID(author.getId());
+        suggestion.setAuthorName(author.getName());
+        suggestion.setContent(content);
+        suggestion.setJumpUrl(repost.getJumpUrl());
+        suggestion.setCreatedAt(Date.from(repost.getTimeCreated().toInstant()));
+
+        try {
+            mongoTemplate.insert(suggestion);
+        } catch (DuplicateKeyException e) {
+            //the backfill got to it first, its copy already has the votes
+        }
+    }
+
+    public void delete(String messageID) {
+        pendingVotes.remove(messageID);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(messageID)), Suggestion.class);
+    }
+
+    /**
+     * Counts a vote added (+1) or taken back (-1). Reactions other than the up and down ticks are ignored.
+     */
+    public void recordVote(String messageID, Emoji emoji, int change) {
+        if (emoji.getType() != Emoji.Type.CUSTOM) {
+            return;
+        }
+
+        long emojiID = emoji.asCustom().getIdLong();
+        boolean up = emojiID == discordConfiguration.getGreenTickId();
+        if (!up && emojiID != discordConfiguration.getRedTickId()) {
+            return;
+        }
+
+        //merged as a new value, so a flush taking the entry out can never lose a vote counted at the same time
+        pendingVotes.merge(messageID, up ? new Votes(change, 0) : new Votes(0, change), Votes::plus);
+    }
+
+    public List<Suggestion> getTop(int limit) {
+        flushQuietly();
+
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.DESC, "score", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Suggestion.class);
+    }
+
+    /**
+     * Writes the counted votes with one bulk $inc. Votes for suggestions that are not stored yet, because
+     * create or the backfill has not written them, are kept pending until they are.
+     */
+    public synchronized void flush() {
+        if (pendingVotes.isEmpty()) {
+            return;
+        }
+
+        //insertion order matches the order of the writes, bulk errors refer to them by index
+        Map<String, Votes> batch = new LinkedHashMap<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Suggestion.class);
+
+        for (String messageID : pendingVotes.keySet()) {
+            Votes votes = pendingVotes.remove(messageID);
+            if (votes == null || votes.up() == 0 && votes.down() == 0) {
+                continue;
+            }
+
+            batch.put(messageID, votes);
+            bulk.updateOne(Query.query(Criteria.where("_id").is(messageID)),
+                    new Update().inc("upvotes", votes.up()).inc("downvotes", votes.down()).inc("score", votes.up() - votes.down()));
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            BulkWriteResult result = bulk.execute();
+            if (result.getMatchedCount() < batch.size()) {
+                keepUnmatched(batch.keySet(), batch);
+            }
+        } catch (BulkOperationException e) {
+            //unordered, so only the failed writes are missing, those are retried on the next flush
+            List<String> order = new ArrayList<>(batch.keySet());
+            Set<String> failed = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                String messageID = order.get(error.getIndex());
+                failed.add(messageID);
+                pendingVotes.merge(messageID, batch.get(messageID), Votes::plus);
+            }
+
+            Set<String> written = new HashSet<>(batch.keySet());
+            written.removeAll(failed);
+            if (e.getResult().getMatchedCount() < written.size()) {
+                keepUnmatched(written, batch);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            //put the votes back so they are retried on the next flush
+            batch.forEach((messageID, votes) -> pendingVotes.merge(messageID, votes, Votes::plus));
+            throw e;
+        }
+    }
+
+    /**
+     * Puts back the votes of the suggestions among messageIDs that are not in the database, the
+     * $inc matched nothing for those.
+     */
+    private void keepUnmatched(Set<String> messageIDs, Map<String, Votes> batch) {
+        Query query = Query.query(Criteria.where("_id").in(messageIDs));
+        query.fields().include("_id");
+
+        Set<String> stored = new HashSet<>();
+        for (Suggestion suggestion : mongoTemplate.find(query, Suggestion.class)) {
+            stored.add(suggestion.getId());
+        }
+
+        for (String messageID : messageIDs) {
+            if (!stored.contains(messageID)) {
+                pendingVotes.merge(messageID, batch.get(messageID), Votes::plus);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to write suggestion votes");
+            e.printStackTrace();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        backfiller.execute(() -> {
+            try {
+                backfill();
+            } catch (RuntimeException e) {
+                //the checkpoint is kept, the next start carries on from it
+                System.out.println("Suggestion backfill stopped");
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Walks the suggestions channel from newest to oldest one page at a time, saving how far it got
+     * after every page. Suggestions already stored are left alone, their votes are tracked live.
+     */
+    private void backfill() {
+        JobCheckpoint checkpoint = mongoTemplate.findById(BACKFILL_JOB, JobCheckpoint.class);
+        if (checkpoint == null) {
+            checkpoint = new JobCheckpoint();
+            checkpoint.setId(BACKFILL_JOB);
+        }
+        if (checkpoint.isDone()) {
+            return;
+        }
+
+        TextChannel channel = DiscordBot.getApi().getTextChannelById(discordConfiguration.getSuggestionsChannelId());
+        if (channel == null) {
+            System.out.println("Suggestion backfill could not find the suggestions channel");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+
+        while (!backfiller.isShutdown()) {
+            List<Message> page = checkpoint.getLastMessageID() == null
+                    ? channel.getHistory().retrievePast(PAGE_SIZE).complete()
+                    : channel.getHistoryBefore(checkpoint.getLastMessageID(), PAGE_SIZE).complete().getRetrievedHistory();
+
+            if (page.isEmpty()) {
+                checkpoint.setDone(true);
+                checkpoint.setUpdatedAt(new Date());
+                mongoTemplate.save(checkpoint);
+                break;
+            }
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Suggestion.class);
+            for (Message message : page) {
+                bulk.upsert(Query.query(Criteria.where("_id").is(message.getId())), backfillUpdate(message));
+            }
+            bulk.execute();
+
+            //pages come newest first, so the last one is where the next page starts
+            checkpoint.setLastMessageID(page.get(page.size() - 1).getId());
+            checkpoint.setProcessed(checkpoint.getProcessed() + page.size());
+            checkpoint.setUpdatedAt(new Date());
+            mongoTemplate.save(checkpoint);
+        }
+
+        System.out.println("Suggestion backfill covered " + checkpoint.getProcessed() + " messages, this run took " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private Update backfillUpdate(Message message) {
+        long up = 0;
+        long down = 0;
+        for (MessageReaction reaction : message.getReactions()) {
+            if (reaction.getEmoji().getType() != Emoji.Type.CUSTOM) {
+                continue;
+            }
+
+            //the bot adds each tick itself, that is not a vote
+            long count = reaction.getCount() - (reaction.isSelf() ? 1 : 0);
+            long emojiID = reaction.getEmoji().asCustom().getIdLong();
+            if (emojiID == discordConfiguration.getGreenTickId()) {
+                up += count;
+            } else if (emojiID == discordConfiguration.getRedTickId()) {
+                down += count;
+            }
+        }
+
+        boolean repost = !message.getEmbeds().isEmpty();
+        String content = repost ? message.getEmbeds().get(0).getDescription() : message.getContentRaw();
+        String authorName = repost && message.getEmbeds().get(0).getAuthor() != null
+                ? message.getEmbeds().get(0).getAuthor().getName()
+                : message.getAuthor().getName();
+
+        return new Update()
+                .setOnInsert("authorID", repost ? null : message.getAuthor().getId())
+                .setOnInsert("authorName", authorName)
+                .setOnInsert("content", content == null ? "" : content)
+                .setOnInsert("jumpUrl", message.getJumpUrl())
+                .setOnInsert("createdAt", Date.from(message.getTimeCreated().toInstant()))
+                .setOnInsert("upvotes", up)
+                .setOnInsert("downvotes", down)
+                .setOnInsert("score", up - down);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfiller.shutdownNow();
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    private record Votes(long up, long down) {
+
+        private Votes plus(Votes other) {
+            return new Votes(up + other.up, down + other.down);
+        }
+
+    }
+
+}
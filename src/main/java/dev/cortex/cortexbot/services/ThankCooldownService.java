@@ -0,0 +1,110 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.Thanked;
+import dev.cortex.cortexbot.repositories.ThankedRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often one member can thank the same member. The last thank of each pair is kept
+ * in memory, only a pair that is not cached yet costs a query, which the Thanked compound index serves.
+ */
+@Service
+public class ThankCooldownService {
+
+    //no thank on record, anything older than the cooldown behaves the same
+    private static final long NEVER = 0L;
+
+    private final ThankedRepository thankedRepository;
+    private final long cooldownMillis;
+
+    //"thankBy:personThanked" to when they were last thanked in millis
+    private final ConcurrentHashMap<String, Long> lastThanked = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ThankCooldownService(ThankedRepository thankedRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${cortex.thanks.cooldown-minutes:60}") long cooldownMinutes) {
+        this.thankedRepository = thankedRepository;
+        this.cooldownMillis = TimeUnit.MINUTES.toMillis(cooldownMinutes);
+        this.hits = Counter.builder("cortex.thanks.cooldown.lookups")
+                .description("Thank cooldown checks")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cortex.thanks.cooldown.lookups")
+                .description("Thank cooldown checks")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * How long until the member can thank this person again, 0 if they can now.
+     */
+    public long getRemainingMillis(String thankBy, String personThanked) {
+        return remaining(lastThanked(thankBy, personThanked), System.currentTimeMillis());
+    }
+
+    /**
+     * Claims the cooldown for the pair if it has passed, so two thanks sent at the same time can not both go through.
+     *
+     * @return 0 if the thank can go ahead, otherwise how long until it can
+     */
+    public long tryThank(String thankBy, String personThanked) {
+        long now = System.currentTimeMillis();
+        long[] remaining = new long[1];
+
+        lastThanked(thankBy, personThanked);
+        lastThanked.compute(key(thankBy, personThanked), (key, last) -> {
+            remaining[0] = remaining(last == null ? NEVER : last, now);
+            return remaining[0] == 0 ? now : last;
+        });
+
+        return remaining[0];
+    }
+
+    /**
+     * Gives back a cooldown claimed by tryThank when the thank did not go through after all.
+     */
+    public void cancel(String thankBy, String personThanked) {
+        //the next check goes back to the database, which never saw this thank
+        lastThanked.remove(key(thankBy, personThanked));
+    }
+
+    @Scheduled(fixedDelayString = "${cortex.thanks.cooldown-minutes:60}", timeUnit = TimeUnit.MINUTES)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        lastThanked.values().removeIf(last -> remaining(last, now) == 0);
+    }
+
+    private long lastThanked(String thankBy, String personThanked) {
+        Long cached = lastThanked.get(key(thankBy, personThanked));
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        Thanked latest = thankedRepository.findFirstByPersonThankedAndThankByOrderByWhenDesc(personThanked, thankBy);
+        long last = latest == null || latest.getWhen() == null ? NEVER : latest.getWhen().getTime();
+
+        //keep whichever is newer in case a thank was claimed while we were reading
+        return lastThanked.merge(key(thankBy, personThanked), last, Math::max);
+    }
+
+    private long remaining(long last, long now) {
+        return Math.max(0, last + cooldownMillis - now);
+    }
+
+    private String key(String thankBy, String personThanked) {
+        return thankBy + ":" + personThanked;
+    }
+
+}
@@ -0,0 +1,166 @@
+package dev.cortex.cortexbot.services;
+
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.model.Thanked;
+import dev.cortex.cortexbot.repositories.ThankedRepository;
+import net.dv8tion.jda.api.EmbedBuilder;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.awt.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records thanks and keeps the thanks counters on each member in step, so stats never need to
+ * count the Thanked collection. Top helper boards are cached until the next thank comes in.
+ */
+@Service
+public class ThanksService {
+
+    public static final int TOP_HELPERS = 10;
+
+    public record Helper(String userID, long thanks, long points) {}
+
+    private final ThankedRepository thankedRepository;
+    private final MongoTemplate mongoTemplate;
+    private final LoggingService loggingService;
+
+    //days to the top helpers over that many days
+    private final Map<Integer, List<Helper>> topHelpers = new ConcurrentHashMap<>();
+
+    public ThanksService(ThankedRepository thankedRepository, MongoTemplate mongoTemplate, LoggingService loggingService) {
+        this.thankedRepository = thankedRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.loggingService = loggingService;
+    }
+
+    /**
+     * Stores the thank and bumps the counters of both members.
+     */
+    public void recordThank(Thanked thanked) {
+        thankedRepository.insert(thanked);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CortexMember.class);
+        //both are known members, the commands check before a thank gets this far
+        bulk.updateOne(Query.query(Criteria.where("userID").is(thanked.getPersonThanked())),
+                new Update().inc("thanksReceived", 1).inc("tipsReceived", thanked.getPoints()));
+        bulk.updateOne(Query.query(Criteria.where("userID").is(thanked.getThankBy())),
+                new Update().inc("thanksGiven", 1).inc("tipsGiven", thanked.getPoints()));
+        bulk.execute();
+
+        topHelpers.clear();
+    }
+
+    public CortexMember getStats(String userID) {
+        Query query = Query.query(Criteria.where("userID").is(userID));
+        query.fields().include("userID").include("thanksReceived").include("thanksGiven").include("tipsReceived").include("tipsGiven");
+        return mongoTemplate.findOne(query, CortexMember.class);
+    }
+
+    /**
+     * The most thanked members over the last few days.
+     */
+    public List<Helper> getTopHelpers(int days) {
+        return topHelpers.computeIfAbsent(days, this::aggregateTopHelpers);
+    }
+
+    private List<Helper> aggregateTopHelpers(int days) {
+        Date from = Date.from(Instant.now().minus(days, ChronoUnit.DAYS));
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("when").gte(from)),
+                Aggregation.project("personThanked", "points"),
+                Aggregation.group("personThanked").count().as("thanks").sum("points").as("points"),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "thanks", "points")),
+                Aggregation.limit(TOP_HELPERS),
+                Aggregation.project("thanks", "points").and("_id").as("userID"));
+
+        return List.copyOf(mongoTemplate.aggregate(aggregation, Thanked.class, Helper.class).getMappedResults());
+    }
+
+    //a quiet spell means no thank clears the cache, let the windows move along anyway
+    @Scheduled(fixedRate = 1, timeUnit = TimeUnit.HOURS)
+    public void expireTopHelpers() {
+        topHelpers.clear();
+    }
+
+    @Scheduled(cron = "${cortex.thanks.report-cron:0 0 12 * * SUN}")
+    public void weeklyReport() {
+        //fresh rather than cached, the window has moved since the last thank
+        List<Helper> helpers = aggregateTopHelpers(7);
+
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < helpers.size(); i++) {
+            Helper helper = helpers.get(i);
+            description.append("(").append(i + 1).append(") - <@").append(helper.userID()).append("> *-* ")
+                    .append(helper.thanks()).append(" thanks");
+            if (helper.points() > 0) {
+                description.append(", ").append(helper.points()).append(" pts tipped");
+            }
+            description.append("\n");
+        }
+        if (helpers.isEmpty()) {
+            description.append("Nobody was thanked this week.");
+        }
+
+        loggingService.log(new EmbedBuilder()
+                .setTitle("Top Helpers This Week")
+                .setDescription(description.toString())
+                .setColor(Color.GREEN)
+                .setTimestamp(Instant.now())
+                .build());
+    }
+
+    /**
+     * Fills in the counters from the existing thanks the first time the bot runs with them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCounters() {
+        //saving a member writes zeroed counters, so only a non zero one means they are in use
+        if (mongoTemplate.exists(Query.query(Criteria.where("thanksReceived").gt(0)), CortexMember.class)
+                || thankedRepository.count() == 0) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CortexMember.class);
+        int members = backfill(bulk, "personThanked", "thanksReceived", "tipsReceived")
+                + backfill(bulk, "thankBy", "thanksGiven", "tipsGiven");
+        if (members > 0) {
+            bulk.execute();
+        }
+
+        System.out.println("Backfilled thanks counters for " + members + " members in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private int backfill(BulkOperations bulk, String field, String countField, String pointsField) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.group(field).count().as("thanks").sum("points").as("points"));
+        List<Document> totals = mongoTemplate.aggregate(aggregation, Thanked.class, Document.class).getMappedResults();
+
+        for (Document total : totals) {
+            bulk.updateOne(Query.query(Criteria.where("userID").is(total.getString("_id"))),
+                    new Update().set(countField, ((Number) total.get("thanks")).longValue())
+                            .set(pointsField, ((Number) total.get("points")).longValue()));
+        }
+
+        return totals.size();
+    }
+
+}
@@ -0,0 +1,129 @@
+package dev.cortex.cortexbot.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures latency and heap allocation of the old findAll-and-sort leaderboard against
+ * the indexed top-N query. Needs a real database, so it only runs when CORTEX_MONGO_STRING is set.
+ */
+@EnabledIfEnvironmentVariable(named = "CORTEX_MONGO_STRING", matches = ".+")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class LeaderboardQueryBenchmarkTests {
+
+    private static final int TOP = 20;
+    private static final int RUNS = 5;
+    private static final int INSERT_BATCH = 10_000;
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private CortexMemberRepository cortexMemberRepository;
+    private PointsService pointsService;
+
+    @BeforeAll
+    void setUp() {
+        mongoClient = MongoClients.create(System.getenv("CORTEX_MONGO_STRING"));
+        mongoTemplate = new MongoTemplate(mongoClient, "cortex_test");
+        cortexMemberRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(CortexMemberRepository.class);
+        pointsService = new PointsService(cortexMemberRepository, mongoTemplate, event -> {});
+    }
+
+    @AfterAll
+    void tearDown() {
+        mongoTemplate.dropCollection(CortexMember.class);
+        mongoClient.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 1_000_000})
+    void topMembers(int members) {
+        seed(members);
+
+        List<String> sorted = measure("findAll + sort", members, () -> cortexMemberRepository.findAll()
+                .stream()
+                .sorted(Comparator.comparing(CortexMember::getPoints).reversed())
+                .limit(TOP)
+                .map(CortexMember::getUserID)
+                .collect(Collectors.toList()));
+
+        List<String> indexed = measure("indexed top-N", members, () -> pointsService.getTopMembers(TOP)
+                .stream()
+                .map(CortexMember::getUserID)
+                .collect(Collectors.toList()));
+
+        //points are unique in the seed data, so both approaches must agree exactly
+        assertEquals(sorted, indexed);
+    }
+
+    private List<String> measure(String approach, int members, Supplier<List<String>> query) {
+        List<String> result = query.get(); //warm up
+
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            result = query.get();
+            totalNanos += System.nanoTime() - start;
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytes;
+        }
+
+        System.out.printf("%,d members, %s: %d ms, %,d KB allocated per call%n",
+                members, approach, TimeUnit.NANOSECONDS.toMillis(totalNanos / RUNS), totalBytes / RUNS / 1024);
+
+        return result;
+    }
+
+    private void seed(int members) {
+        mongoTemplate.dropCollection(CortexMember.class);
+        mongoTemplate.indexOps(CortexMember.class).ensureIndex(new Index().on("points", Sort.Direction.DESC).on("_id", Sort.Direction.DESC));
+
+        Random random = new Random(members);
+        List<CortexMember> batch = new ArrayList<>(INSERT_BATCH);
+
+        for (int i = 0; i < members; i++) {
+            CortexMember member = new CortexMember();
+            member.setUserID(String.valueOf(100_000_000_000_000_000L + i));
+            member.setName("member-" + i);
+            //spread the points out and keep them unique
+            member.setPoints((long) random.nextInt(members) * members + i);
+            member.setMessagesSent(random.nextInt(10_000));
+            batch.add(member);
+
+            if (batch.size() == INSERT_BATCH) {
+                mongoTemplate.insert(batch, CortexMember.class);
+                batch = new ArrayList<>(INSERT_BATCH);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, CortexMember.class);
+        }
+    }
+
+}
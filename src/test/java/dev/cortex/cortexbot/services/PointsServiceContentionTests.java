@@ -0,0 +1,115 @@
+package dev.cortex.cortexbot.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the old load/modify/save points path against the atomic findAndModify path
+ * when many threads update the same member. Needs a real database, so it only runs
+ * when CORTEX_MONGO_STRING is set.
+ */
+@EnabledIfEnvironmentVariable(named = "CORTEX_MONGO_STRING", matches = ".+")
+class PointsServiceContentionTests {
+
+    private static final String USER_ID = "contended-member";
+    private static final int THREADS = 16;
+    private static final int UPDATES_PER_THREAD = 250;
+    private static final long TOTAL_UPDATES = (long) THREADS * UPDATES_PER_THREAD;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private CortexMemberRepository cortexMemberRepository;
+    private PointsService pointsService;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create(System.getenv("CORTEX_MONGO_STRING"));
+        mongoTemplate = new MongoTemplate(mongoClient, "cortex_test");
+        cortexMemberRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(CortexMemberRepository.class);
+        pointsService = new PointsService(cortexMemberRepository, mongoTemplate, event -> {});
+
+        mongoTemplate.dropCollection(CortexMember.class);
+
+        CortexMember member = new CortexMember();
+        member.setUserID(USER_ID);
+        cortexMemberRepository.save(member);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(CortexMember.class);
+        mongoClient.close();
+    }
+
+    @Test
+    void readModifyWrite() throws InterruptedException {
+        long millis = contend(() -> {
+            CortexMember member = cortexMemberRepository.findByUserIDIs(USER_ID);
+            member.addPoints(1);
+            cortexMemberRepository.save(member);
+        });
+
+        long points = cortexMemberRepository.findByUserIDIs(USER_ID).getPoints();
+        report("read-modify-write", millis, points);
+
+        assertTrue(points <= TOTAL_UPDATES);
+    }
+
+    @Test
+    void atomicIncrement() throws InterruptedException {
+        long millis = contend(() -> pointsService.addPoints(USER_ID, 1));
+
+        long points = cortexMemberRepository.findByUserIDIs(USER_ID).getPoints();
+        report("findAndModify $inc", millis, points);
+
+        assertEquals(TOTAL_UPDATES, points);
+    }
+
+    private long contend(Runnable update) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < UPDATES_PER_THREAD; j++) {
+                    update.run();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    private void report(String approach, long millis, long points) {
+        System.out.printf("%s: %d updates in %d ms (%.0f updates/s), %d lost%n",
+                approach, TOTAL_UPDATES, millis, TOTAL_UPDATES * 1000.0 / Math.max(millis, 1), TOTAL_UPDATES - points);
+    }
+
+}
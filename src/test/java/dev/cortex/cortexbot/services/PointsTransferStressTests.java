@@ -0,0 +1,120 @@
+package dev.cortex.cortexbot.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import dev.cortex.cortexbot.model.CortexMember;
+import dev.cortex.cortexbot.repositories.CortexMemberRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fires thousands of concurrent transfers between a handful of members and checks that no
+ * points were created or destroyed and nobody went below zero. Needs a real database, so it
+ * only runs when CORTEX_MONGO_STRING is set.
+ */
+@EnabledIfEnvironmentVariable(named = "CORTEX_MONGO_STRING", matches = ".+")
+class PointsTransferStressTests {
+
+    private static final int MEMBERS = 10;
+    private static final long STARTING_POINTS = 1_000;
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 200;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private CortexMemberRepository cortexMemberRepository;
+    private PointsService pointsService;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create(System.getenv("CORTEX_MONGO_STRING"));
+        mongoTemplate = new MongoTemplate(mongoClient, "cortex_test");
+        cortexMemberRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(CortexMemberRepository.class);
+        pointsService = new PointsService(cortexMemberRepository, mongoTemplate, event -> {});
+
+        mongoTemplate.dropCollection(CortexMember.class);
+
+        List<CortexMember> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            CortexMember member = new CortexMember();
+            member.setUserID("member-" + i);
+            member.setPoints(STARTING_POINTS);
+            members.add(member);
+        }
+        cortexMemberRepository.saveAll(members);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(CortexMember.class);
+        mongoClient.close();
+    }
+
+    @Test
+    void transfersConservePoints() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger declined = new AtomicInteger();
+
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < TRANSFERS_PER_THREAD; j++) {
+                    String from = "member-" + random.nextInt(MEMBERS);
+                    String to = "member-" + random.nextInt(MEMBERS);
+                    //big enough amounts that balances regularly run dry
+                    long amount = 1 + random.nextInt(400);
+
+                    if (pointsService.transfer(from, to, amount) != null) {
+                        completed.incrementAndGet();
+                    } else {
+                        declined.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        List<CortexMember> members = cortexMemberRepository.findAll();
+        long total = members.stream().mapToLong(CortexMember::getPoints).sum();
+
+        System.out.printf("%d transfers in %d ms, %d completed, %d declined for lack of points%n",
+                THREADS * TRANSFERS_PER_THREAD, millis, completed.get(), declined.get());
+
+        assertEquals(MEMBERS, members.size());
+        assertEquals(MEMBERS * STARTING_POINTS, total);
+        //read the raw documents, the entity setter would hide a negative balance
+        assertEquals(0, mongoTemplate.getCollection("member").countDocuments(new Document("points", new Document("$lt", 0))));
+    }
+
+}
@@ -0,0 +1,59 @@
+package dev.cortex.cortexbot.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the rank tree against a plain sorted list after a run of random point changes.
+ */
+class RankTreeTests {
+
+    private static final Comparator<Map.Entry<String, Long>> ORDER = Map.Entry.<String, Long>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey());
+
+    @Test
+    void matchesSortedList() {
+        RankTree tree = new RankTree();
+        Map<String, Long> points = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20_000; i++) {
+            String userID = "member-" + random.nextInt(2_000);
+            long total = random.nextInt(500);
+
+            Long previous = points.put(userID, total);
+            if (previous != null) {
+                tree.remove(userID, previous);
+            }
+            tree.insert(userID, total);
+        }
+
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(points.entrySet());
+        sorted.sort(ORDER);
+
+        assertEquals(sorted.size(), tree.size());
+
+        for (int i = 0; i < sorted.size(); i++) {
+            Map.Entry<String, Long> expected = sorted.get(i);
+            assertEquals(i, tree.indexOf(expected.getKey(), expected.getValue()));
+        }
+
+        List<RankingService.Entry> slice = tree.range(100, 25);
+        assertEquals(25, slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            assertEquals(sorted.get(100 + i).getKey(), slice.get(i).userID());
+            assertEquals(101 + i, slice.get(i).rank());
+        }
+
+        assertEquals(sorted.size() - 5, tree.range(5, Integer.MAX_VALUE - 5).size());
+    }
+
+}